@@ -0,0 +1,287 @@
+package net.dogbuilt.wpi;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.InitializerDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.MethodReferenceExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.nodeTypes.NodeWithExtends;
+import com.github.javaparser.ast.nodeTypes.NodeWithImplements;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Divides the output of one Specimin run on a batch of targets into the fields and methods each
+ * target needs.
+ *
+ * <p>A target needs its own declaration, and everything the declarations it needs refer to:
+ * methods it calls, fields it reads or writes, and so on. It also needs what Specimin keeps for the
+ * structure of the classes involved: the methods a needed method overrides or implements in the
+ * output's supertypes, and whatever the constructors and initializers refer to of the classes
+ * enclosing a needed declaration, of the classes it creates instances of, and of their supertypes,
+ * which {@code super(...)} calls. References are matched by name (and, for method calls, by number
+ * of arguments) rather than resolved, so a target may also be given a same-named member it does not
+ * use. Declarations no target refers to are given to the targets declared in the same top-level
+ * class, and to no target if there are none, rather than making every target in the batch overlap.
+ *
+ * <p>This approximates what Specimin would have kept for each target alone, and can still miss
+ * something Specimin needs for a reason not covered above when another target in the batch refers
+ * to it, so overlaps between targets can be slightly understated.
+ */
+final class BatchSplitter {
+    private BatchSplitter() {
+        throw new AssertionError("Cannot instantiate BatchSplitter");
+    }
+
+    /**
+     * @param signature the declaration's signature, as {@link SpeciminTool#fieldsAndMethods} gives it
+     * @param node      the declaration, whose body is searched for references
+     * @param arity     the number of parameters, or -1 for a field
+     */
+    private record Declaration(String signature, Node node, int arity, boolean varArgs) {
+        boolean accepts(int arguments) {
+            return arguments == arity || (varArgs && arguments >= arity - 1);
+        }
+    }
+
+    /**
+     * @return the signatures each target needs, for every target
+     * @throws IOException if the output cannot be read
+     */
+    static Map<SpeciminTarget, Set<String>> split(String outputDirectory, List<SpeciminTarget> targets) throws IOException {
+        var methods = new HashMap<String, List<Declaration>>();
+        var fields = new HashMap<String, List<Declaration>>();
+        var bySignature = new LinkedHashMap<String, Declaration>();
+        /* the output's types by simple name, to find supertypes in */
+        var types = new HashMap<String, List<TypeDeclaration<?>>>();
+
+        var dir = Path.of(outputDirectory);
+        var files = Files.isDirectory(dir) ? SpeciminTool.findAllJavaFilesInMinimizedDir(dir) : List.<File>of();
+        for (var file : files) {
+            var cu = SpeciminTool.parseMinimized(file);
+            for (TypeDeclaration<?> type : cu.findAll(TypeDeclaration.class)) {
+                types.computeIfAbsent(type.getNameAsString(), k -> new ArrayList<>()).add(type);
+            }
+            for (var method : cu.findAll(MethodDeclaration.class)) {
+                var signature = SpeciminTool.signatureOf(method);
+                if (signature == null)
+                    continue;
+                var parameters = method.getParameters();
+                var varArgs = !parameters.isEmpty() && parameters.get(parameters.size() - 1).isVarArgs();
+                var declaration = new Declaration(signature, method, parameters.size(), varArgs);
+                bySignature.putIfAbsent(signature, declaration);
+                methods.computeIfAbsent(method.getNameAsString(), k -> new ArrayList<>()).add(declaration);
+            }
+            for (var field : cu.findAll(FieldDeclaration.class)) {
+                var signature = SpeciminTool.signatureOf(field);
+                if (signature == null)
+                    continue;
+                var declaration = new Declaration(signature, field, -1, false);
+                bySignature.putIfAbsent(signature, declaration);
+                /* a declaration such as int a, b; is one signature, after a, but is referred to by either name */
+                for (var variable : field.getVariables()) {
+                    fields.computeIfAbsent(variable.getNameAsString(), k -> new ArrayList<>()).add(declaration);
+                }
+            }
+        }
+
+        /* by identity, since records of AST nodes would be compared structurally */
+        var references = new IdentityHashMap<Declaration, List<Declaration>>();
+        var needed = new LinkedHashMap<SpeciminTarget, Set<String>>();
+        var attributed = new HashSet<String>();
+        /* the top-level classes each target is declared in */
+        var classes = new HashMap<SpeciminTarget, Set<Node>>();
+        for (var target : targets) {
+            var reachable = new HashSet<String>();
+            var roots = roots(target, bySignature, methods, fields);
+            var declaredIn = Collections.<Node>newSetFromMap(new IdentityHashMap<>());
+            roots.forEach(root -> declaredIn.add(topLevel(root.node())));
+            classes.put(target, declaredIn);
+            var queue = new ArrayDeque<Declaration>(roots);
+            while (!queue.isEmpty()) {
+                var declaration = queue.poll();
+                if (!reachable.add(declaration.signature()))
+                    continue;
+                queue.addAll(references.computeIfAbsent(declaration, d -> neededBy(d, methods, fields, types)));
+            }
+            attributed.addAll(reachable);
+            needed.put(target, reachable);
+        }
+
+        for (var declaration : bySignature.values()) {
+            if (attributed.contains(declaration.signature()))
+                continue;
+            var declaredIn = topLevel(declaration.node());
+            needed.forEach((target, signatures) -> {
+                if (classes.get(target).contains(declaredIn))
+                    signatures.add(declaration.signature());
+            });
+        }
+        return needed;
+    }
+
+    private static Node topLevel(Node node) {
+        var top = node;
+        for (Node ancestor = node; ancestor != null; ancestor = ancestor.getParentNode().orElse(null)) {
+            if (ancestor instanceof TypeDeclaration<?>)
+                top = ancestor;
+        }
+        return top;
+    }
+
+    /**
+     * @return the target's own declaration, or if Specimin wrote its signature differently, the
+     * members of its class with its name
+     */
+    private static List<Declaration> roots(SpeciminTarget target, Map<String, Declaration> bySignature,
+                                           Map<String, List<Declaration>> methods, Map<String, List<Declaration>> fields) {
+        /* Specimin's output names parameter types as they are written, as the target was given to it */
+        var signature = target.speciminSignature();
+        var exact = bySignature.get(signature);
+        if (exact != null)
+            return List.of(exact);
+
+        int hash = signature.indexOf('#');
+        int paren = signature.indexOf('(');
+        var owner = signature.substring(0, Math.max(hash, 0));
+        var name = signature.substring(hash + 1, paren < 0 ? signature.length() : paren);
+        var candidates = target.type() == SpeciminTool.SpeciminTargetType.METHOD ? methods : fields;
+        return candidates.getOrDefault(name, List.of())
+                .stream()
+                .filter(declaration -> declaration.signature().startsWith(owner + "#"))
+                .toList();
+    }
+
+    /**
+     * @return the declarations that a declaration refers to, that it overrides, and that the
+     * constructors and initializers refer to of its enclosing classes and of the classes it creates
+     */
+    private static List<Declaration> neededBy(Declaration declaration, Map<String, List<Declaration>> methods,
+                                              Map<String, List<Declaration>> fields,
+                                              Map<String, List<TypeDeclaration<?>>> types) {
+        var needed = new ArrayList<>(referencedBy(declaration.node(), methods, fields));
+        var constructed = Collections.<TypeDeclaration<?>>newSetFromMap(new IdentityHashMap<>());
+        for (Node ancestor = declaration.node().getParentNode().orElse(null);
+             ancestor != null;
+             ancestor = ancestor.getParentNode().orElse(null)) {
+            if (ancestor instanceof TypeDeclaration<?> type)
+                construct(type, constructed, types);
+        }
+        for (var creation : declaration.node().findAll(ObjectCreationExpr.class)) {
+            for (var type : types.getOrDefault(creation.getType().getNameAsString(), List.of())) {
+                construct(type, constructed, types);
+            }
+        }
+        for (var type : constructed) {
+            for (var member : type.getMembers()) {
+                if (member instanceof ConstructorDeclaration || member instanceof InitializerDeclaration) {
+                    needed.addAll(referencedBy(member, methods, fields));
+                }
+            }
+        }
+        if (declaration.node() instanceof MethodDeclaration method) {
+            var owner = method.findAncestor(TypeDeclaration.class).orElse(null);
+            if (owner != null) {
+                for (var supertype : supertypes(owner, types)) {
+                    for (var overridden : methods.getOrDefault(method.getNameAsString(), List.of())) {
+                        if (overridden.arity() == declaration.arity()
+                                && overridden.node().findAncestor(TypeDeclaration.class).orElse(null) == supertype) {
+                            needed.add(overridden);
+                        }
+                    }
+                }
+            }
+        }
+        return needed;
+    }
+
+    /**
+     * Adds a class whose constructors and initializers run, along with its supertypes, whose
+     * constructors run through {@code super(...)}, and the classes those constructors and
+     * initializers create.
+     */
+    private static void construct(TypeDeclaration<?> type, Set<TypeDeclaration<?>> constructed,
+                                  Map<String, List<TypeDeclaration<?>>> types) {
+        if (!constructed.add(type))
+            return;
+        for (var supertype : supertypes(type, types)) {
+            construct(supertype, constructed, types);
+        }
+        for (var member : type.getMembers()) {
+            if (!(member instanceof ConstructorDeclaration || member instanceof InitializerDeclaration))
+                continue;
+            for (var creation : member.findAll(ObjectCreationExpr.class)) {
+                for (var created : types.getOrDefault(creation.getType().getNameAsString(), List.of())) {
+                    construct(created, constructed, types);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the type's supertypes that are in the output, transitively, matched by simple name
+     */
+    private static Set<TypeDeclaration<?>> supertypes(TypeDeclaration<?> type, Map<String, List<TypeDeclaration<?>>> types) {
+        var found = Collections.<TypeDeclaration<?>>newSetFromMap(new IdentityHashMap<>());
+        var queue = new ArrayDeque<TypeDeclaration<?>>(List.of(type));
+        while (!queue.isEmpty()) {
+            var current = queue.poll();
+            var names = new ArrayList<String>();
+            if (current instanceof NodeWithExtends<?> extending) {
+                extending.getExtendedTypes().forEach(supertype -> names.add(supertype.getNameAsString()));
+            }
+            if (current instanceof NodeWithImplements<?> implementing) {
+                implementing.getImplementedTypes().forEach(supertype -> names.add(supertype.getNameAsString()));
+            }
+            for (var name : names) {
+                for (var supertype : types.getOrDefault(name, List.of())) {
+                    if (supertype != type && found.add(supertype)) {
+                        queue.add(supertype);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private static List<Declaration> referencedBy(Node node, Map<String, List<Declaration>> methods,
+                                                  Map<String, List<Declaration>> fields) {
+        var referenced = new ArrayList<Declaration>();
+        for (var call : node.findAll(MethodCallExpr.class)) {
+            int arguments = call.getArguments().size();
+            for (var method : methods.getOrDefault(call.getNameAsString(), List.of())) {
+                if (method.accepts(arguments))
+                    referenced.add(method);
+            }
+        }
+        for (var reference : node.findAll(MethodReferenceExpr.class)) {
+            referenced.addAll(methods.getOrDefault(reference.getIdentifier(), List.of()));
+        }
+        for (var name : node.findAll(NameExpr.class)) {
+            referenced.addAll(fields.getOrDefault(name.getNameAsString(), List.of()));
+        }
+        for (var access : node.findAll(FieldAccessExpr.class)) {
+            referenced.addAll(fields.getOrDefault(access.getNameAsString(), List.of()));
+        }
+        return referenced;
+    }
+}
@@ -0,0 +1,21 @@
+package net.dogbuilt.wpi;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Collection;
+
+/**
+ * Runs a Checker Framework checker over a project, reporting its errors as warnings.
+ */
+interface CheckerRunner {
+    /**
+     * Runs the checker, passing each warning to {@code sink} as soon as it is reported, while the checker is still running.
+     *
+     * @param checker          the fully qualified name of the checker
+     * @param projectDirectory the project, laid out like njr-1
+     * @param files            the files to check, relative to the project directory; if empty, every file in src is checked
+     * @param out              where to print how the run went, which is the project's output when several run at once
+     */
+    void run(String checker, String projectDirectory, Collection<String> files, WarningSink sink, PrintStream out)
+            throws IOException, InterruptedException;
+}
@@ -0,0 +1,95 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Helpers for running several checkers at once, which javac accepts as a comma separated list of
+ * processors.
+ *
+ * <p>With {@code -AshowPrefixInWarningMessages}, the Checker Framework starts each message key with
+ * the reporting checker's prefix, e.g. {@code [nullness:argument]}; this is how we tell which
+ * checker reported a warning. Checkers built from subcheckers, like the Index and Resource Leak
+ * Checkers, report their subcheckers' warnings with the subcheckers' prefixes, e.g.
+ * {@code [upperbound:array.access.unsafe.high]}, so those are attributed to the checker that ran them.
+ */
+final class Checkers {
+    /* the prefixes of the subcheckers each checker runs, by the checker's own prefix */
+    private static final Map<String, Set<String>> SUBCHECKERS = Map.of(
+            "index", Set.of("upperbound", "lowerbound", "samelen", "searchindex", "substringindex", "lessthan", "value"),
+            "resourceleak", Set.of("mustcall", "calledmethods", "returnsreceiver", "value"),
+            "calledmethods", Set.of("returnsreceiver", "value"),
+            "nullness", Set.of("keyfor", "initialization"));
+
+    private Checkers() {
+        throw new AssertionError("Cannot instantiate Checkers");
+    }
+
+    /**
+     * @param checkers a comma separated list of fully qualified checker names
+     * @return the checkers, in order
+     */
+    static List<String> split(String checkers) {
+        return Arrays.stream(checkers.split(","))
+                .map(String::trim)
+                .filter(checker -> !checker.isEmpty())
+                .toList();
+    }
+
+    /**
+     * Works out which checker reported a message with the given key.
+     *
+     * @param checkers the checkers that were run
+     * @param key      the message key, with the checker's prefix if there is one, e.g. {@code nullness:argument}
+     * @return the fully qualified name of the checker, or of the first one that runs a subchecker with
+     * the key's prefix, or the key's prefix if it matches none of them, or null if we cannot tell
+     */
+    static @Nullable String reporting(List<String> checkers, @Nullable String key) {
+        if (checkers.size() == 1)
+            return checkers.get(0);
+        var prefix = prefix(key);
+        if (prefix == null)
+            return null;
+        for (var checker : checkers) {
+            if (defaultPrefix(checker).equals(prefix))
+                return checker;
+        }
+        for (var checker : checkers) {
+            if (SUBCHECKERS.getOrDefault(defaultPrefix(checker), Set.of()).contains(prefix))
+                return checker;
+        }
+        return prefix;
+    }
+
+    /**
+     * @return the part of a key before the first colon, or null if there is none
+     */
+    static @Nullable String prefix(@Nullable String key) {
+        if (key == null)
+            return null;
+        int colon = key.indexOf(':');
+        return colon < 0 ? null : key.substring(0, colon);
+    }
+
+    /**
+     * @return the key without the checker's prefix
+     */
+    static @Nullable String withoutPrefix(@Nullable String key) {
+        if (key == null)
+            return null;
+        return key.substring(key.indexOf(':') + 1);
+    }
+
+    /* e.g. org.checkerframework.checker.nullness.NullnessChecker -> nullness */
+    private static String defaultPrefix(String checker) {
+        var simpleName = checker.substring(checker.lastIndexOf('.') + 1);
+        if (simpleName.endsWith("Checker"))
+            simpleName = simpleName.substring(0, simpleName.length() - "Checker".length());
+        return simpleName.toLowerCase(Locale.ROOT);
+    }
+}
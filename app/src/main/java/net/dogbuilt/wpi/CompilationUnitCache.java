@@ -0,0 +1,170 @@
+package net.dogbuilt.wpi;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A bounded cache of parsed compilation units, keyed by path and modification time.
+ *
+ * <p>Resolving a single warning needs the compilation unit of its file several times, and a project
+ * usually has many warnings per file, so without this we end up parsing the same file over and over.
+ * Entries are evicted in least-recently-used order once the cache is full, and an entry is
+ * re-parsed if the file has been modified since it was cached. Each entry also holds the
+ * {@link DeclarationIndex} for its file, so the index is built at most once per parse.
+ */
+final class CompilationUnitCache {
+    /** The default number of compilation units to keep; overridable with -Dwpi.compilationUnitCacheSize. */
+    private static final int DEFAULT_MAX_ENTRIES = 256;
+
+    /**
+     * The Java version files are parsed as: records and other newer syntax parse, and so does
+     * older code like njr-1's.
+     */
+    static final ParserConfiguration.LanguageLevel LANGUAGE_LEVEL = ParserConfiguration.LanguageLevel.JAVA_21;
+
+    /* a parser is not thread-safe, so each thread gets its own */
+    private static final ThreadLocal<JavaParser> PARSER = ThreadLocal.withInitial(() ->
+            new JavaParser(new ParserConfiguration().setLanguageLevel(LANGUAGE_LEVEL)));
+
+    private static final CompilationUnitCache SHARED =
+            new CompilationUnitCache(Integer.getInteger("wpi.compilationUnitCacheSize", DEFAULT_MAX_ENTRIES));
+
+    private static final class Entry {
+        final long lastModified;
+        final CompilationUnit compilationUnit;
+        /* built the first time someone asks for it */
+        @Nullable DeclarationIndex index = null;
+
+        Entry(long lastModified, CompilationUnit compilationUnit) {
+            this.lastModified = lastModified;
+            this.compilationUnit = compilationUnit;
+        }
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    CompilationUnitCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("cache must hold at least one compilation unit");
+        }
+        this.maxEntries = maxEntries;
+        /* access order gives us LRU iteration order for free */
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return the cache shared by all warning resolution in this JVM.
+     */
+    static CompilationUnitCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the parsed compilation unit for the given file, parsing it only if it is not cached or
+     * has been modified since it was cached.
+     *
+     * @param file path to a Java source file
+     * @return the compilation unit for the file
+     * @throws FileNotFoundException if the file does not exist
+     */
+    CompilationUnit get(String file) throws FileNotFoundException {
+        return entry(file).compilationUnit;
+    }
+
+    /**
+     * Returns the declaration index for the given file, building it only once per cached compilation unit.
+     *
+     * @param file path to a Java source file
+     * @return the declaration index for the file
+     * @throws FileNotFoundException if the file does not exist
+     */
+    DeclarationIndex index(String file) throws FileNotFoundException {
+        var entry = entry(file);
+        synchronized (entry) {
+            var index = entry.index;
+            if (index == null) {
+                index = DeclarationIndex.of(entry.compilationUnit);
+                entry.index = index;
+            }
+            return index;
+        }
+    }
+
+    private Entry entry(String file) throws FileNotFoundException {
+        var source = new File(file).getAbsoluteFile();
+        var key = source.getPath();
+        /* lastModified is 0 for a missing file, in which case parsing below throws for us */
+        long lastModified = source.lastModified();
+
+        synchronized (this) {
+            @Nullable Entry cached = entries.get(key);
+            if (cached != null && cached.lastModified == lastModified) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        /* parse outside the lock; at worst two threads parse the same file and the last one wins */
+        var entry = new Entry(lastModified, compilationUnit(PARSER.get().parse(source)));
+        synchronized (this) {
+            entries.put(key, entry);
+            Iterator<String> eldest = entries.keySet().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions++;
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Parses source code with this thread's parser, without caching it.
+     *
+     * @throws ParseProblemException if the code does not parse
+     */
+    static CompilationUnit parse(String source) {
+        return compilationUnit(PARSER.get().parse(source));
+    }
+
+    private static CompilationUnit compilationUnit(ParseResult<CompilationUnit> result) {
+        var compilationUnit = result.getResult().orElse(null);
+        if (!result.isSuccessful() || compilationUnit == null) {
+            throw new ParseProblemException(result.getProblems());
+        }
+        return compilationUnit;
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return a one line summary of the cache's hit/miss counters, suitable for printing at the end of a run.
+     */
+    synchronized String stats() {
+        long lookups = hits + misses;
+        float hitRate = lookups == 0 ? 0 : ((float) hits) / lookups;
+        return "Compilation unit cache: " + hits + " hits, " + misses + " misses, " + evictions
+                + " evictions (hit rate " + hitRate + ")";
+    }
+}
@@ -0,0 +1,278 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs Specimin in a small number of long-lived {@link SpeciminWorker} processes.
+ *
+ * <p>Only the first target sent to a worker pays for JVM startup, and later targets benefit from its
+ * warmed-up JIT, while a crash in Specimin still only takes down a worker rather than this JVM.
+ * Requests are pipelined: each target goes to the worker with the fewest outstanding requests
+ * without waiting for earlier answers, so a worker never sits idle between targets.
+ *
+ * <p>A worker is retired once it has been sent {@code recycleAfter} targets, or once it reports
+ * using more than {@code recycleHeapBytes} of heap; it finishes what it was sent and is replaced
+ * by a fresh worker.
+ *
+ * <p>A target that goes over its time limit kills its worker, along with the other targets that
+ * worker was running, which fail and can be retried on a fresh worker. Since requests queue behind
+ * each other, a target's time limit is multiplied by the number of requests ahead of it. The memory
+ * limit is not enforced per target; {@code recycleHeapBytes} bounds a worker's memory instead.
+ */
+final class DaemonSpeciminExecutor implements SpeciminExecutor {
+    private final List<String> workerCommand;
+    private final File workingDirectory;
+    private final int workerCount;
+    private final int recycleAfter;
+    private final long recycleHeapBytes;
+    private final SpeciminLimits limits;
+
+    /* guarded by this */
+    private final List<Worker> workers = new ArrayList<>();
+    private long nextRequestId = 0;
+
+    private record Response(boolean succeeded, long usedHeap, String log, String error) {
+    }
+
+    /**
+     * @param queued how many requests the worker had outstanding when this one was sent
+     */
+    private record Submission(Worker worker, int queued, CompletableFuture<Response> response) {
+    }
+
+    /**
+     * @param javaPath         the java executable to run workers with
+     * @param speciminPath     path to the Specimin project
+     * @param maxHeap          maximum heap size for each worker JVM, in -Xmx syntax, or null for the JVM's default
+     * @param workerCount      the number of workers to keep running
+     * @param inProcessReuse   how many targets each of a worker's Specimin class loaders runs before it is replaced
+     * @param recycleAfter     how many targets a worker runs before it is replaced
+     * @param recycleHeapBytes heap usage above which a worker is replaced, or 0 to never replace workers for memory
+     * @param limits           when to kill a worker; only the time limit is used
+     */
+    DaemonSpeciminExecutor(Path javaPath, Path speciminPath, @Nullable String maxHeap, int workerCount,
+                           int inProcessReuse, int recycleAfter, long recycleHeapBytes, SpeciminLimits limits) {
+        var command = new ArrayList<String>();
+        command.add(javaPath.toString());
+        if (maxHeap != null) {
+            command.add("-Xmx" + maxHeap);
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SpeciminWorker.class.getName());
+        command.add(speciminPath.toAbsolutePath().toString());
+        command.add(Integer.toString(inProcessReuse));
+
+        this.workerCommand = List.copyOf(command);
+        this.workingDirectory = speciminPath.toFile();
+        this.workerCount = workerCount;
+        this.recycleAfter = recycleAfter;
+        this.recycleHeapBytes = recycleHeapBytes;
+        this.limits = limits;
+    }
+
+    @Override
+    public void execute(List<String> arguments, SpeciminLog log) throws IOException, InterruptedException {
+        var submission = submit(arguments);
+        Response response;
+        try {
+            if (limits.timeoutMillis() > 0) {
+                response = submission.response().get(limits.timeoutMillis() * (submission.queued() + 1), TimeUnit.MILLISECONDS);
+            } else {
+                response = submission.response().get();
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Specimin worker failed", e.getCause());
+        } catch (TimeoutException e) {
+            submission.worker().kill();
+            Metrics.shared().count("specimin.timeouts");
+            throw new IOException("Specimin timed out after " + limits.timeoutMillis() + " ms");
+        }
+
+        log.append(response.log() + System.lineSeparator());
+        if (recycleHeapBytes > 0 && response.usedHeap() > recycleHeapBytes) {
+            retire(submission.worker());
+        }
+        if (!response.succeeded()) {
+            throw new IOException("Specimin failed: " + response.error());
+        }
+    }
+
+    /**
+     * Sends a request to the live worker with the least outstanding work, starting new workers as needed.
+     */
+    private synchronized Submission submit(List<String> arguments) throws IOException {
+        workers.removeIf(Worker::isRetired);
+        while (workers.size() < workerCount) {
+            workers.add(new Worker(startWorker()));
+        }
+
+        Worker best = workers.get(0);
+        for (var worker : workers) {
+            if (worker.outstanding() < best.outstanding()) {
+                best = worker;
+            }
+        }
+        int queued = best.outstanding();
+        return new Submission(best, queued, best.submit(++nextRequestId, arguments, recycleAfter));
+    }
+
+    /* retiring goes through here so a worker cannot be retired between being picked and sent a request */
+    private synchronized void retire(Worker worker) {
+        worker.retire();
+    }
+
+    private Process startWorker() throws IOException {
+        var builder = new ProcessBuilder(workerCommand);
+        builder.directory(workingDirectory);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        try {
+            return builder.start();
+        } catch (IOException e) {
+            throw new IOException("Failed to start a Specimin worker", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (var worker : workers) {
+            worker.retire();
+        }
+        workers.clear();
+    }
+
+    private static final class Worker {
+        private final Process process;
+        private final BufferedWriter requests;
+        private final ConcurrentHashMap<String, CompletableFuture<Response>> pending = new ConcurrentHashMap<>();
+
+        /* guarded by this */
+        private int sent = 0;
+        private boolean retired = false;
+
+        Worker(Process process) {
+            this.process = process;
+            this.requests = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            var reader = new Thread(this::readResponses, "specimin-worker-" + process.pid());
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        int outstanding() {
+            return pending.size();
+        }
+
+        synchronized boolean isRetired() {
+            return retired || !process.isAlive();
+        }
+
+        /**
+         * Sends a request without waiting for the answers to earlier ones.
+         *
+         * @param recycleAfter the number of requests after which this worker retires
+         * @return the worker's eventual answer
+         */
+        CompletableFuture<Response> submit(long id, List<String> arguments, int recycleAfter) throws IOException {
+            var key = Long.toString(id);
+            var response = new CompletableFuture<Response>();
+            var fields = new ArrayList<String>();
+            fields.add(key);
+            for (var argument : arguments) {
+                fields.add(SpeciminWorker.escape(argument));
+            }
+
+            synchronized (this) {
+                if (retired) {
+                    throw new IOException("Specimin worker was retired before the request was sent");
+                }
+                pending.put(key, response);
+                try {
+                    requests.write(String.join("\t", fields));
+                    requests.newLine();
+                    requests.flush();
+                } catch (IOException e) {
+                    pending.remove(key);
+                    throw new IOException("Failed to send a request to a Specimin worker", e);
+                }
+                if (++sent >= recycleAfter) {
+                    /* it can answer this last request, but gets nothing after it */
+                    retired = true;
+                }
+            }
+            return response;
+        }
+
+        /**
+         * Stops sending this worker requests. It exits once it has answered the ones it has.
+         */
+        synchronized void retire() {
+            retired = true;
+            closeRequestsIfDone();
+        }
+
+        /**
+         * Stops this worker straight away, failing whatever it has not answered yet.
+         */
+        synchronized void kill() {
+            retired = true;
+            ProcessSpeciminExecutor.destroyTree(process.toHandle());
+        }
+
+        /* closing stdin is what tells the worker to exit */
+        private synchronized void closeRequestsIfDone() {
+            if (!retired || !pending.isEmpty())
+                return;
+            try {
+                requests.close();
+            } catch (IOException e) {
+                /* the worker is already gone; there is nothing left to tell it */
+            }
+        }
+
+        private void readResponses() {
+            try (var watch = Metrics.shared().watch("specimin-worker", process);
+                 var reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    var fields = SpeciminWorker.split(line);
+                    if (fields.size() != 5)
+                        continue;
+                    var response = pending.remove(fields.get(0));
+                    if (response == null)
+                        continue;
+                    response.complete(new Response(
+                            SpeciminWorker.OK.equals(fields.get(1)),
+                            Long.parseLong(fields.get(2)),
+                            fields.get(3),
+                            fields.get(4)));
+                    closeRequestsIfDone();
+                }
+            } catch (IOException | NumberFormatException e) {
+                /* fall through and fail whatever is still pending */
+            }
+
+            var exited = new IOException("Specimin worker exited before answering");
+            pending.values().forEach(response -> response.completeExceptionally(exited));
+            pending.clear();
+            synchronized (this) {
+                retired = true;
+            }
+        }
+    }
+}
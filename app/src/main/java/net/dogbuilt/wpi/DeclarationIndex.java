@@ -0,0 +1,194 @@
+package net.dogbuilt.wpi;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.InitializerDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * An index from line numbers to the declarations enclosing them in a single compilation unit.
+ *
+ * <p>The index covers methods, constructors, fields, initializers and lambdas. It is built with one
+ * walk over the AST, after which the innermost declaration enclosing a line is found with a binary
+ * search over the line ranges, rather than filtering every declaration in the file for every warning.
+ */
+final class DeclarationIndex {
+    enum Kind {
+        METHOD,
+        CONSTRUCTOR,
+        FIELD,
+        INITIALIZER,
+        LAMBDA
+    }
+
+    /**
+     * A declaration covering the lines {@code beginLine} to {@code endLine}, inclusive.
+     *
+     * @param parent index of the nearest enclosing declaration in {@link #declarations}, or -1 if there is none
+     */
+    record Declaration(Kind kind, int beginLine, int endLine, Node node, int depth, int parent) {
+    }
+
+    private final CompilationUnit compilationUnit;
+
+    /* declarations in AST pre-order, so a declaration always comes after its parent */
+    private final List<Declaration> declarations;
+
+    /*
+     * The lines of the file split into runs with the same innermost declaration: the run starting at
+     * runStarts[i] extends up to runStarts[i + 1] - 1, and its innermost declaration is runDeclarations[i]
+     * (-1 for lines outside of any declaration).
+     */
+    private final int[] runStarts;
+    private final int[] runDeclarations;
+
+    private DeclarationIndex(CompilationUnit compilationUnit, List<Declaration> declarations, int[] runStarts, int[] runDeclarations) {
+        this.compilationUnit = compilationUnit;
+        this.declarations = declarations;
+        this.runStarts = runStarts;
+        this.runDeclarations = runDeclarations;
+    }
+
+    static DeclarationIndex of(CompilationUnit compilationUnit) {
+        var declarations = new ArrayList<Declaration>();
+        var indices = new IdentityHashMap<Node, Integer>();
+        int lastLine = 0;
+
+        /* findAll walks the tree in pre-order, so parents are indexed before their children */
+        for (Node node : compilationUnit.findAll(Node.class)) {
+            var kind = kindOf(node);
+            if (kind == null)
+                continue;
+            var begin = node.getBegin().orElse(null);
+            var end = node.getEnd().orElse(null);
+            if (begin == null || end == null)
+                continue;
+
+            int parent = -1;
+            int depth = 0;
+            for (Node ancestor = node.getParentNode().orElse(null);
+                 ancestor != null;
+                 ancestor = ancestor.getParentNode().orElse(null)) {
+                Integer ancestorIndex = indices.get(ancestor);
+                if (ancestorIndex != null) {
+                    parent = ancestorIndex;
+                    depth = declarations.get(ancestorIndex).depth() + 1;
+                    break;
+                }
+            }
+
+            indices.put(node, declarations.size());
+            declarations.add(new Declaration(kind, begin.line, end.line, node, depth, parent));
+            lastLine = Math.max(lastLine, end.line);
+        }
+
+        /*
+         * Paint each line with its deepest declaration. Declarations nest, so this is linear in the
+         * number of lines times the nesting depth. When siblings share a line, the first one wins.
+         */
+        int[] innermost = new int[lastLine + 2];
+        Arrays.fill(innermost, -1);
+        for (int i = 0; i < declarations.size(); i++) {
+            var declaration = declarations.get(i);
+            for (int line = declaration.beginLine(); line <= declaration.endLine(); line++) {
+                int current = innermost[line];
+                if (current == -1 || declarations.get(current).depth() < declaration.depth()) {
+                    innermost[line] = i;
+                }
+            }
+        }
+
+        /* run-length encode the painted lines; line 0 does not exist, so it starts the first run */
+        var runStarts = new ArrayList<Integer>();
+        var runDeclarations = new ArrayList<Integer>();
+        for (int line = 0; line < innermost.length; line++) {
+            if (line == 0 || innermost[line] != innermost[line - 1]) {
+                runStarts.add(line);
+                runDeclarations.add(innermost[line]);
+            }
+        }
+
+        return new DeclarationIndex(
+                compilationUnit,
+                List.copyOf(declarations),
+                runStarts.stream().mapToInt(Integer::intValue).toArray(),
+                runDeclarations.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static @Nullable Kind kindOf(Node node) {
+        if (node instanceof MethodDeclaration)
+            return Kind.METHOD;
+        if (node instanceof ConstructorDeclaration)
+            return Kind.CONSTRUCTOR;
+        if (node instanceof FieldDeclaration)
+            return Kind.FIELD;
+        if (node instanceof InitializerDeclaration)
+            return Kind.INITIALIZER;
+        if (node instanceof LambdaExpr)
+            return Kind.LAMBDA;
+        return null;
+    }
+
+    CompilationUnit compilationUnit() {
+        return compilationUnit;
+    }
+
+    List<Declaration> declarations() {
+        return declarations;
+    }
+
+    /**
+     * @return the first line of each run of lines with the same innermost declaration, ascending; the
+     * last run is the lines after every declaration
+     */
+    int[] runStarts() {
+        return runStarts.clone();
+    }
+
+    /**
+     * @param line a line number in the file
+     * @return the innermost declaration enclosing the line, or null if the line is not inside a declaration
+     */
+    @Nullable Declaration innermost(int line) {
+        int run = Arrays.binarySearch(runStarts, line);
+        if (run < 0) {
+            /* not the start of a run, so it is in the run before the insertion point */
+            run = -run - 2;
+        }
+        if (run < 0 || run >= runDeclarations.length)
+            return null;
+        int declaration = runDeclarations[run];
+        return declaration == -1 ? null : declarations.get(declaration);
+    }
+
+    /**
+     * Finds the outermost declaration of the given type enclosing a line.
+     *
+     * <p>This is the outermost rather than the innermost one since we use it to find Specimin targets;
+     * a method of an anonymous class inside a method cannot be targeted, but the method containing it can.
+     *
+     * @param line a line number in the file
+     * @param type the type of declaration to look for
+     * @return the outermost declaration of that type enclosing the line, or null if there is none
+     */
+    <T extends Node> @Nullable T outermostEnclosing(int line, Class<T> type) {
+        @Nullable T found = null;
+        for (var declaration = innermost(line);
+             declaration != null;
+             declaration = declaration.parent() == -1 ? null : declarations.get(declaration.parent())) {
+            if (type.isInstance(declaration.node())) {
+                found = type.cast(declaration.node());
+            }
+        }
+        return found;
+    }
+}
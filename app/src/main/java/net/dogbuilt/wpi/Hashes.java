@@ -0,0 +1,60 @@
+package net.dogbuilt.wpi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Helpers for content hashes, which we use as cache keys.
+ */
+final class Hashes {
+    private Hashes() {
+        throw new AssertionError("Cannot instantiate Hashes");
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            /* every Java platform is required to support SHA-256 */
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * @return the hex encoded hash of the file's contents
+     * @throws IOException if the file cannot be read
+     */
+    static String ofFile(Path file) throws IOException {
+        var digest = newDigest();
+        try (InputStream in = Files.newInputStream(file)) {
+            var buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static String ofBytes(byte[] bytes) {
+        return HexFormat.of().formatHex(newDigest().digest(bytes));
+    }
+
+    /**
+     * Adds a string to a digest, followed by a separator so that adjacent strings cannot run together.
+     */
+    static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    static String hex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,142 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Runs the checker inside this JVM through {@link javax.tools.JavaCompiler}, with the same options
+ * get-error-lines.sh passes to the Checker Framework's javac.
+ *
+ * <p>Errors come straight from a {@link DiagnosticListener} rather than from parsing javac's
+ * output, so each warning also carries its column, source positions and the checker's message key.
+ *
+ * <p>The Checker Framework uses javac internals, so this JVM must be started with the
+ * {@code --add-exports} and {@code --add-opens} flags for {@code jdk.compiler} listed in the
+ * Checker Framework manual; {@code ./gradlew run} passes them.
+ */
+final class InProcessCheckerRunner implements CheckerRunner {
+    private final Path checkerJar;
+    private final Path checkerQualJar;
+
+    /**
+     * @param checkerFrameworkPath the Checker Framework distribution, i.e. $CHECKERFRAMEWORK
+     */
+    InProcessCheckerRunner(Path checkerFrameworkPath) {
+        this.checkerJar = checkerFrameworkPath.resolve("checker/dist/checker.jar");
+        this.checkerQualJar = checkerFrameworkPath.resolve("checker/dist/checker-qual.jar");
+    }
+
+    @Override
+    public void run(String checker, String projectDirectory, Collection<String> files, WarningSink sink, PrintStream out)
+            throws IOException {
+        var compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IOException("No system Java compiler; run with a JDK rather than a JRE");
+        }
+
+        var sources = new ArrayList<Path>();
+        if (files.isEmpty()) {
+            try (Stream<Path> paths = Files.walk(Path.of(projectDirectory + "/src"))) {
+                paths.filter(Files::isRegularFile)
+                        .filter(path -> path.toString().endsWith(".java"))
+                        .sorted()
+                        .forEach(sources::add);
+            }
+        } else {
+            for (var file : files) {
+                sources.add(Path.of(projectDirectory + "/" + file));
+            }
+        }
+
+        /* assumes layout from njr-1 */
+        var options = List.of(
+                "-cp", projectDirectory + "/lib" + File.pathSeparator + checkerQualJar,
+                "-processorpath", checkerJar.toString(),
+                "-sourcepath", projectDirectory + "/src",
+                "-proc:only",
+                "-processor", checker,
+                "-AshowPrefixInWarningMessages",
+                "-Xmaxerrs", "100000");
+
+        var checkers = Checkers.split(checker);
+        DiagnosticListener<JavaFileObject> listener = diagnostic -> {
+            var warning = toWarning(diagnostic, checkers);
+            if (warning == null)
+                return;
+            try {
+                sink.accept(warning);
+            } catch (IOException e) {
+                /* javac does not let listeners throw; unwrapped below */
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        try (var fileManager = compiler.getStandardFileManager(listener, Locale.ROOT, StandardCharsets.UTF_8)) {
+            /* javac's own output, other than diagnostics, goes to the project's output too */
+            var writer = new PrintWriter(out);
+            var task = compiler.getTask(writer, fileManager, listener, options, null,
+                    fileManager.getJavaFileObjectsFromPaths(sources));
+            boolean succeeded = task.call();
+            writer.flush();
+            out.println("Exited with code: " + (succeeded ? 0 : 1));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            /* javac wraps exceptions thrown by listeners and processors */
+            if (e.getCause() instanceof UncheckedIOException unchecked)
+                throw unchecked.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the warning for an error in a source file, or null for anything else, like get-error-lines.sh
+     */
+    private static @Nullable Warning toWarning(Diagnostic<? extends JavaFileObject> diagnostic, List<String> checkers) {
+        if (diagnostic.getKind() != Diagnostic.Kind.ERROR)
+            return null;
+        var source = diagnostic.getSource();
+        if (source == null || diagnostic.getLineNumber() == Diagnostic.NOPOS)
+            return null;
+        var key = messageKey(diagnostic);
+        return new Warning(
+                source.getName(),
+                (int) diagnostic.getLineNumber(),
+                diagnostic.getColumnNumber(),
+                diagnostic.getStartPosition(),
+                diagnostic.getEndPosition(),
+                Checkers.withoutPrefix(key),
+                Checkers.reporting(checkers, key));
+    }
+
+    /**
+     * @return the checker's key for the message, e.g. {@code nullness:argument}, which the Checker
+     * Framework puts in brackets at the start of the message; otherwise javac's diagnostic code
+     */
+    private static @Nullable String messageKey(Diagnostic<? extends JavaFileObject> diagnostic) {
+        var message = diagnostic.getMessage(Locale.ROOT);
+        if (message.startsWith("[")) {
+            int end = message.indexOf(']');
+            if (end > 1)
+                return message.substring(1, end);
+        }
+        return diagnostic.getCode();
+    }
+}
@@ -0,0 +1,188 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.jar.JarFile;
+
+/**
+ * Runs Specimin inside this JVM, by loading specimin.jar into its own class loader and calling its
+ * main method directly.
+ *
+ * <p>Each class loader only sees specimin.jar and the platform classes, so Specimin's dependencies
+ * (including its copy of JavaParser) are isolated from ours, and each loader has its own copy of
+ * Specimin's static state. A loader is used by one target at a time and is thrown away after
+ * {@code reuseLimit} targets, or after any target that fails; with a limit of one, every target gets
+ * fresh static state while still sharing the warm JVM and JDK classes.
+ *
+ * <p>While a target runs, anything the running thread writes to {@link System#out} or
+ * {@link System#err} goes to that target's log instead.
+ *
+ * <p>If Specimin calls {@link System#exit}, it takes this JVM with it; use
+ * {@link ProcessSpeciminExecutor} if that is a concern.
+ */
+final class InProcessSpeciminExecutor implements SpeciminExecutor {
+    private final URL speciminJar;
+    private final String mainClassName;
+    private final int reuseLimit;
+
+    /* loaders not currently running a target */
+    private final ConcurrentLinkedDeque<Loader> idle = new ConcurrentLinkedDeque<>();
+
+    private static final class Loader {
+        final URLClassLoader classLoader;
+        final Method main;
+        int uses = 0;
+
+        Loader(URLClassLoader classLoader, Method main) {
+            this.classLoader = classLoader;
+            this.main = main;
+        }
+    }
+
+    /**
+     * @param speciminPath path to the Specimin project
+     * @param reuseLimit   how many targets a class loader may run before it is replaced
+     * @throws IOException if specimin.jar cannot be read or has no main class
+     */
+    InProcessSpeciminExecutor(Path speciminPath, int reuseLimit) throws IOException {
+        var jar = SpeciminTool.speciminJar(speciminPath);
+        @Nullable String mainClass;
+        try (var jarFile = new JarFile(jar.toFile())) {
+            var manifest = jarFile.getManifest();
+            mainClass = manifest == null ? null : manifest.getMainAttributes().getValue("Main-Class");
+        }
+        if (mainClass == null) {
+            throw new IOException(jar + " does not declare a Main-Class");
+        }
+        this.speciminJar = jar.toUri().toURL();
+        this.mainClassName = mainClass;
+        this.reuseLimit = reuseLimit;
+        ThreadOutput.install();
+    }
+
+    @Override
+    public void execute(List<String> arguments, SpeciminLog log) throws IOException, InterruptedException {
+        var loader = borrow();
+        log.append("Specimin output:" + System.lineSeparator());
+        var output = log.outputStream();
+        var thread = Thread.currentThread();
+        var previousContextClassLoader = thread.getContextClassLoader();
+        boolean succeeded = false;
+
+        ThreadOutput.redirectTo(output);
+        thread.setContextClassLoader(loader.classLoader);
+        try {
+            loader.main.invoke(null, (Object) arguments.toArray(new String[0]));
+            succeeded = true;
+        } catch (InvocationTargetException e) {
+            throw new IOException("Specimin failed", e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IOException("Could not call Specimin's main method", e);
+        } finally {
+            thread.setContextClassLoader(previousContextClassLoader);
+            ThreadOutput.restore();
+            /* writes out a last line that did not end in a line break */
+            output.close();
+            giveBack(loader, succeeded);
+        }
+    }
+
+    private Loader borrow() throws IOException {
+        var loader = idle.pollFirst();
+        if (loader != null) {
+            return loader;
+        }
+
+        var classLoader = new URLClassLoader("specimin", new URL[]{speciminJar}, ClassLoader.getPlatformClassLoader());
+        try {
+            var main = classLoader.loadClass(mainClassName).getMethod("main", String[].class);
+            return new Loader(classLoader, main);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            classLoader.close();
+            throw new IOException("Could not load Specimin's main class " + mainClassName, e);
+        }
+    }
+
+    private void giveBack(Loader loader, boolean succeeded) throws IOException {
+        loader.uses++;
+        /* a failed run may have left its static state in any condition, so we do not reuse it */
+        if (succeeded && loader.uses < reuseLimit) {
+            idle.addFirst(loader);
+        } else {
+            loader.classLoader.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        Loader loader;
+        while ((loader = idle.pollFirst()) != null) {
+            try {
+                loader.classLoader.close();
+            } catch (IOException e) {
+                /* nothing useful to do; the loader is unreachable either way */
+            }
+        }
+    }
+
+    /**
+     * Routes {@link System#out} and {@link System#err} to a per-thread stream, so targets running
+     * in parallel on different threads each capture only their own output.
+     */
+    private static final class ThreadOutput extends OutputStream {
+        private static final ThreadLocal<@Nullable OutputStream> CURRENT = new ThreadLocal<>();
+        private static boolean installed = false;
+
+        private final OutputStream fallback;
+
+        private ThreadOutput(OutputStream fallback) {
+            this.fallback = fallback;
+        }
+
+        static synchronized void install() {
+            if (installed)
+                return;
+            System.setOut(new PrintStream(new ThreadOutput(System.out), true));
+            System.setErr(new PrintStream(new ThreadOutput(System.err), true));
+            installed = true;
+        }
+
+        static void redirectTo(OutputStream output) {
+            CURRENT.set(output);
+        }
+
+        static void restore() {
+            CURRENT.remove();
+        }
+
+        private OutputStream target() {
+            var current = CURRENT.get();
+            return current == null ? fallback : current;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+}
@@ -0,0 +1,504 @@
+package net.dogbuilt.wpi;
+
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import javax.tools.Diagnostic;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * What a run of the pipeline saw and produced, saved so the next run can skip work whose inputs
+ * have not changed.
+ *
+ * <p>We record the hash of every source and library file, the checker's warnings for each source
+ * file, and for each Specimin target its output directory, the source files its output was
+ * minimized from, and the declarations in its output.
+ *
+ * <p>The file is line oriented, with tab separated fields; {@code T} lines are followed by the
+ * {@code I} (input) and {@code S} (signature) lines that belong to them:
+ *
+ * <pre>
+ * wpi-incremental 1
+ * C checker
+ * F path hash
+ * W path line checker column start-position end-position key
+ * T target-file type signature output-directory
+ * I path
+ * S signature
+ * </pre>
+ *
+ * <p>Paths are relative to the project directory, e.g. {@code src/pkg/Main.java}. A warning's
+ * fields after its line are left out if none of them is known, and are otherwise empty or
+ * {@code -1} when unknown; the column picks the variable a warning on a field declaration is on.
+ */
+final class IncrementalState {
+    private static final String HEADER = "wpi-incremental 1";
+    private static final Pattern IDENTIFIER = Pattern.compile("\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*");
+    /* a dotted name followed by a dot, such as the package in import p.*; or p.A */
+    private static final Pattern QUALIFIER = Pattern.compile(IDENTIFIER + "(?:\\s*\\.\\s*" + IDENTIFIER + ")*(?=\\s*\\.)");
+    /* the package of a type that may be in any package */
+    private static final String ANY_PACKAGE = "*";
+
+    /**
+     * What we know about a target from an earlier run.
+     *
+     * @param inputs     project-relative paths of the source files the output was minimized from
+     * @param signatures the fields and methods in the output
+     */
+    record TargetRecord(SpeciminTarget target, String outputDirectory, Set<String> inputs, SignatureSet signatures) {
+    }
+
+    private final String checker;
+    private final Map<String, String> fileHashes;
+    /* project-relative source file -> warnings, whose files are also project-relative */
+    private final Map<String, List<Warning>> warnings;
+    private final Map<SpeciminTarget, TargetRecord> targets;
+
+    IncrementalState(String checker, Map<String, String> fileHashes, Map<String, List<Warning>> warnings,
+                     Map<SpeciminTarget, TargetRecord> targets) {
+        this.checker = checker;
+        this.fileHashes = fileHashes;
+        this.warnings = warnings;
+        this.targets = targets;
+    }
+
+    /**
+     * Hashes every source file under {@code src} and every file under {@code lib} of a project,
+     * taking the hashes of the files the source index read from there rather than reading them
+     * again. Files the index trusted an earlier index for are read, so that an edit that keeps a
+     * file's size and modification time, e.g. restored from an archive, is still seen.
+     *
+     * @param sources the index of the files under {@code src}
+     * @return project-relative path -> content hash
+     */
+    static Map<String, String> hashInputs(String projectDirectory, SourceIndex sources) throws IOException {
+        var project = Path.of(projectDirectory);
+        var src = project.resolve("src");
+        var hashes = new TreeMap<String, String>();
+        for (var directory : List.of(src, project.resolve("lib"))) {
+            if (!Files.isDirectory(directory))
+                continue;
+            List<Path> files;
+            try (Stream<Path> paths = Files.walk(directory)) {
+                files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+            for (var file : files) {
+                var indexed = !directory.equals(src) ? null : sources.hash(src.relativize(file).toString());
+                hashes.put(project.relativize(file).toString(), indexed != null ? indexed : Hashes.ofFile(file));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * @return the state saved in the file, or null if there is no usable state there
+     */
+    static @Nullable IncrementalState load(Path file) throws IOException {
+        if (!Files.isRegularFile(file))
+            return null;
+
+        @Nullable String checker = null;
+        var fileHashes = new TreeMap<String, String>();
+        var warnings = new TreeMap<String, List<Warning>>();
+        var targets = new TreeMap<SpeciminTarget, TargetRecord>();
+        /* signatures are collected as strings and interned once each target is complete */
+        var signatures = new TreeMap<SpeciminTarget, List<String>>();
+        @Nullable TargetRecord current = null;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine()))
+                return null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                var fields = line.split("\t", -1);
+                switch (fields[0]) {
+                    case "C" -> checker = fields[1];
+                    case "F" -> fileHashes.put(fields[1], fields[2]);
+                    case "W" -> warnings.computeIfAbsent(fields[1], k -> new ArrayList<>()).add(parseWarning(fields));
+                    case "T" -> {
+                        var target = new SpeciminTarget(fields[1], fields[3], SpeciminTool.SpeciminTargetType.valueOf(fields[2]));
+                        current = new TargetRecord(target, fields[4], new LinkedHashSet<>(), SignatureSet.EMPTY);
+                        targets.put(target, current);
+                        signatures.put(target, new ArrayList<>());
+                    }
+                    case "I" -> {
+                        if (current != null)
+                            current.inputs().add(fields[1]);
+                    }
+                    case "S" -> {
+                        if (current != null)
+                            signatures.computeIfAbsent(current.target(), k -> new ArrayList<>()).add(fields[1]);
+                    }
+                    default -> {
+                        /* written by a newer version; ignore what we do not understand */
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            /* a corrupt state file just means we redo everything */
+            return null;
+        }
+
+        if (checker == null)
+            return null;
+        var table = SignatureTable.shared();
+        targets.replaceAll((target, record) -> new TargetRecord(
+                target, record.outputDirectory(), record.inputs(),
+                SignatureSet.of(signatures.getOrDefault(target, List.of()), table)));
+        return new IncrementalState(checker, fileHashes, warnings, targets);
+    }
+
+    /**
+     * Writes the state to a file, replacing it atomically.
+     */
+    void save(Path file) throws IOException {
+        var absolute = file.toAbsolutePath();
+        var temporary = Files.createTempFile(absolute.getParent(), "wpi-incremental", ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            writeLine(writer, "C", checker);
+            for (var hash : fileHashes.entrySet()) {
+                writeLine(writer, "F", hash.getKey(), hash.getValue());
+            }
+            for (var fileWarnings : warnings.entrySet()) {
+                for (var warning : fileWarnings.getValue()) {
+                    writeLine(writer, warningLine(fileWarnings.getKey(), warning));
+                }
+            }
+            for (var record : targets.values()) {
+                var target = record.target();
+                writeLine(writer, "T", target.targetFile(), target.type().name(), target.signature(), record.outputDirectory());
+                for (var input : record.inputs()) {
+                    writeLine(writer, "I", input);
+                }
+                for (var signature : record.signatures().signatures(SignatureTable.shared())) {
+                    writeLine(writer, "S", signature);
+                }
+            }
+        }
+        Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param file the warning's file, as it is to be written
+     * @return the fields of the {@code W} line for the warning
+     */
+    static String[] warningLine(String file, Warning warning) {
+        var checker = warning.checker();
+        var key = warning.key();
+        if (warning.column() == Diagnostic.NOPOS && warning.startPosition() == Diagnostic.NOPOS
+                && warning.endPosition() == Diagnostic.NOPOS && key == null) {
+            return checker == null
+                    ? new String[]{"W", file, Integer.toString(warning.line())}
+                    : new String[]{"W", file, Integer.toString(warning.line()), checker};
+        }
+        return new String[]{"W", file, Integer.toString(warning.line()), checker == null ? "" : checker,
+                Long.toString(warning.column()), Long.toString(warning.startPosition()),
+                Long.toString(warning.endPosition()), key == null ? "" : key};
+    }
+
+    /**
+     * @return the warning on a {@code W} line, in the line's file
+     */
+    static Warning parseWarning(String[] fields) {
+        var checker = fields.length > 3 && !fields[3].isEmpty() ? fields[3] : null;
+        if (fields.length <= 4)
+            return new Warning(fields[1], Integer.parseInt(fields[2]), checker);
+        return new Warning(fields[1], Integer.parseInt(fields[2]), Long.parseLong(fields[4]), Long.parseLong(fields[5]),
+                Long.parseLong(fields[6]), fields[7].isEmpty() ? null : fields[7], checker);
+    }
+
+    private static void writeLine(BufferedWriter writer, String... fields) throws IOException {
+        writer.write(String.join("\t", fields));
+        writer.newLine();
+    }
+
+    /**
+     * @return the project-relative paths of files that were added, removed or modified since this state was saved
+     */
+    Set<String> changedFiles(Map<String, String> currentHashes) {
+        var changed = new HashSet<String>();
+        for (var current : currentHashes.entrySet()) {
+            if (!current.getValue().equals(fileHashes.get(current.getKey()))) {
+                changed.add(current.getKey());
+            }
+        }
+        for (var previous : fileHashes.keySet()) {
+            if (!currentHashes.containsKey(previous)) {
+                changed.add(previous);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return whether this state's warnings can be reused for a run of the given checker with the given changes
+     */
+    boolean warningsReusable(String checker, Set<String> changedFiles) {
+        /* a changed library can change the warnings anywhere */
+        return this.checker.equals(checker) && changedFiles.stream().noneMatch(path -> path.startsWith("lib/"));
+    }
+
+    /**
+     * Works out which source files need to go through the checker again: the ones that changed,
+     * the ones that refer to a type declared in a changed file, and the ones whose earlier Specimin
+     * outputs depended on a changed file, since a change to a declaration can introduce warnings
+     * where it is used, whether or not there were warnings there before.
+     *
+     * <p>References are found by name, so a file that mentions a changed type's simple name
+     * anywhere, even in a comment, is checked again, if it is in the type's package or mentions the
+     * package, e.g. in an import. A file declaring a subtype of a changed type counts as changed
+     * too, since its subtypes and their users inherit the change without naming the changed type.
+     * The types each file declares, and its package, come from the source index.
+     *
+     * @param sources the index of the current files under {@code src}
+     * @return project-relative paths of existing source files to check again
+     */
+    Set<String> filesToRecheck(Set<String> changedFiles, Map<String, String> currentHashes, String projectDirectory,
+                               SourceIndex sources) throws IOException {
+        var project = Path.of(projectDirectory);
+        var recheck = new HashSet<String>();
+        /* simple names of the types declared in changed files, and of their subtypes -> their packages */
+        var changedTypes = new HashMap<String, Set<String>>();
+        for (var changed : changedFiles) {
+            if (!changed.endsWith(".java"))
+                continue;
+            var declared = currentHashes.containsKey(changed) ? declaredTypes(project, changed, sources) : null;
+            if (currentHashes.containsKey(changed)) {
+                recheck.add(changed);
+            }
+            if (declared != null) {
+                /* the package its directory implies too, in case the file's package declaration changed */
+                var directory = changed.substring("src/".length(), Math.max(changed.lastIndexOf('/'), "src/".length()));
+                for (var type : declared.types()) {
+                    changedType(changedTypes, type.simpleName(), declared.packageName());
+                    changedType(changedTypes, type.simpleName(), directory.replace('/', '.'));
+                }
+            } else {
+                /* a removed, renamed or unparseable file's main type is named after it, in whatever package it was */
+                changedType(changedTypes, typeNamedAfter(changed), ANY_PACKAGE);
+            }
+        }
+
+        var files = currentHashes.keySet().stream()
+                .filter(path -> path.startsWith("src/") && path.endsWith(".java"))
+                .sorted()
+                .toList();
+        var mentions = new TreeMap<String, Mentions>();
+        boolean grew = !changedTypes.isEmpty();
+        while (grew) {
+            grew = false;
+            for (var file : files) {
+                if (recheck.contains(file))
+                    continue;
+                var declared = declaredTypes(project, file, sources);
+                var mentioned = mentions.get(file);
+                if (mentioned == null) {
+                    mentioned = Mentions.of(new String(Files.readAllBytes(project.resolve(file)), StandardCharsets.UTF_8));
+                    mentions.put(file, mentioned);
+                }
+                if (!mentioned.any(changedTypes, declared == null ? null : declared.packageName()))
+                    continue;
+                recheck.add(file);
+                if (declared == null) {
+                    /* for all we know, it extends a changed type */
+                    grew |= changedType(changedTypes, typeNamedAfter(file), ANY_PACKAGE);
+                    continue;
+                }
+                for (var type : declared.types()) {
+                    if (type.supertypes().stream().anyMatch(changedTypes::containsKey)) {
+                        grew |= changedType(changedTypes, type.simpleName(), declared.packageName());
+                    }
+                }
+            }
+        }
+        for (var record : targets.values()) {
+            if (record.inputs().stream().anyMatch(changedFiles::contains)) {
+                var targetFile = "src/" + record.target().targetFile();
+                if (currentHashes.containsKey(targetFile)) {
+                    recheck.add(targetFile);
+                }
+            }
+        }
+        return recheck;
+    }
+
+    /**
+     * @return whether the type was not already known to have changed
+     */
+    private static boolean changedType(Map<String, Set<String>> changedTypes, String simpleName, String packageName) {
+        return changedTypes.computeIfAbsent(simpleName, k -> new HashSet<>()).add(packageName);
+    }
+
+    /**
+     * @param file a project-relative source file
+     * @return what the file declares, from the source index if it has the file, or null if the file does not parse
+     */
+    private static SourceIndex.@Nullable Declarations declaredTypes(Path project, String file, SourceIndex sources)
+            throws FileNotFoundException {
+        var indexed = sources.declarations(file.substring("src/".length()));
+        if (indexed != null)
+            return indexed;
+        CompilationUnit compilationUnit;
+        try {
+            compilationUnit = CompilationUnitCache.shared().get(project.resolve(file).toString());
+        } catch (ParseProblemException e) {
+            return null;
+        }
+        var types = new ArrayList<SourceIndex.Type>();
+        for (TypeDeclaration<?> type : compilationUnit.findAll(TypeDeclaration.class)) {
+            types.add(new SourceIndex.Type(type.getNameAsString(), SourceIndex.supertypes(type)));
+        }
+        var packageName = compilationUnit.getPackageDeclaration().map(p -> p.getNameAsString()).orElse("");
+        return new SourceIndex.Declarations(packageName, types, new int[0], List.of());
+    }
+
+    private static String typeNamedAfter(String file) {
+        var fileName = file.substring(file.lastIndexOf('/') + 1);
+        return fileName.substring(0, fileName.length() - ".java".length());
+    }
+
+    /**
+     * The names a source file mentions.
+     *
+     * @param identifiers every identifier in the file
+     * @param qualifiers  every dotted name in the file that is followed by a dot, and its prefixes, which
+     *                    include the packages it imports from or names types in
+     */
+    private record Mentions(Set<String> identifiers, Set<String> qualifiers) {
+        static Mentions of(String source) {
+            var identifiers = new HashSet<String>();
+            var matcher = IDENTIFIER.matcher(source);
+            while (matcher.find()) {
+                identifiers.add(matcher.group());
+            }
+            var qualifiers = new HashSet<String>();
+            matcher = QUALIFIER.matcher(source);
+            while (matcher.find()) {
+                var qualifier = new StringBuilder();
+                for (var part : matcher.group().split("\\.")) {
+                    if (!qualifier.isEmpty())
+                        qualifier.append('.');
+                    qualifiers.add(qualifier.append(part.strip()).toString());
+                }
+            }
+            return new Mentions(identifiers, qualifiers);
+        }
+
+        /**
+         * @param packageName the file's package, or null if it is not known
+         * @return whether the file may refer to one of the types
+         */
+        boolean any(Map<String, Set<String>> types, @Nullable String packageName) {
+            for (var identifier : identifiers) {
+                var packages = types.get(identifier);
+                if (packages == null)
+                    continue;
+                if (packageName == null || packages.contains(ANY_PACKAGE) || packages.contains(packageName))
+                    return true;
+                /* the default package cannot be imported from */
+                if (packages.stream().anyMatch(p -> !p.isEmpty() && qualifiers.contains(p)))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param recheck      the files being checked again, whose warnings the checker reports afresh
+     * @param changedFiles the files that changed, including removed ones, whose earlier warnings are stale
+     * @return the warnings from this state in files that are neither being checked again nor changed
+     */
+    List<Warning> warningsExcept(Set<String> recheck, Set<String> changedFiles, String projectDirectory) {
+        var kept = new ArrayList<Warning>();
+        for (var fileWarnings : warnings.entrySet()) {
+            if (recheck.contains(fileWarnings.getKey()) || changedFiles.contains(fileWarnings.getKey()))
+                continue;
+            for (var warning : fileWarnings.getValue()) {
+                kept.add(inFile(projectDirectory + "/" + fileWarnings.getKey(), warning));
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return the earlier record for the target, if none of the files its output was minimized from
+     * have changed and its output is still on disk; otherwise null
+     */
+    @Nullable TargetRecord reusable(SpeciminTarget target, Set<String> changedFiles) {
+        var record = targets.get(target);
+        if (record == null)
+            return null;
+        if (changedFiles.stream().anyMatch(path -> path.startsWith("lib/")))
+            return null;
+        if (changedFiles.contains("src/" + target.targetFile()))
+            return null;
+        if (record.inputs().stream().anyMatch(changedFiles::contains))
+            return null;
+        if (!Files.isDirectory(Path.of(record.outputDirectory())))
+            return null;
+        return record;
+    }
+
+    /**
+     * @return the project-relative source files a Specimin output was minimized from, which are the
+     * source files with the same path relative to the source root as the output's files
+     */
+    static Set<String> inputsOf(SpeciminTarget target, String outputDirectory) throws IOException {
+        var inputs = new LinkedHashSet<String>();
+        inputs.add("src/" + target.targetFile());
+        var output = Path.of(outputDirectory);
+        if (Files.isDirectory(output)) {
+            try (Stream<Path> paths = Files.walk(output)) {
+                paths.filter(Files::isRegularFile)
+                        .filter(path -> path.toString().endsWith(".java"))
+                        .map(path -> "src/" + output.relativize(path))
+                        .sorted()
+                        .forEach(inputs::add);
+            }
+        }
+        return inputs;
+    }
+
+    /**
+     * Groups warnings by project-relative file, for saving.
+     */
+    static Map<String, List<Warning>> warningsByFile(List<Warning> warnings, String projectDirectory) {
+        var prefix = projectDirectory + "/";
+        var byFile = new TreeMap<String, List<Warning>>();
+        for (var warning : warnings) {
+            var file = warning.file().startsWith(prefix) ? warning.file().substring(prefix.length()) : warning.file();
+            byFile.computeIfAbsent(file, k -> new ArrayList<>()).add(inFile(file, warning));
+        }
+        return byFile;
+    }
+
+    /**
+     * @return the warning, moved to another path for the same file
+     */
+    static Warning inFile(String file, Warning warning) {
+        return new Warning(file, warning.line(), warning.column(), warning.startPosition(), warning.endPosition(),
+                warning.key(), warning.checker());
+    }
+}
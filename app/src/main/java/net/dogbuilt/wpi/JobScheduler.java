@@ -0,0 +1,54 @@
+package net.dogbuilt.wpi;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed number of threads shared by everything submitted through its {@linkplain #forPriority
+ * executors}. A free thread always takes the waiting job with the highest priority, whichever
+ * executor it came from, so several projects can share one set of Specimin slots without any of
+ * them sitting idle while another has work queued.
+ *
+ * <p>Lower numbers mean higher priority; jobs with the same priority run in the order they were
+ * submitted.
+ */
+final class JobScheduler implements AutoCloseable {
+    private record Job(Runnable task, int priority, long sequence) implements Runnable, Comparable<Job> {
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int byPriority = Integer.compare(priority, other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param threads the most jobs to run at once
+     */
+    JobScheduler(int threads) {
+        /* only Jobs are ever queued, so the queue's natural ordering is theirs */
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>());
+    }
+
+    /**
+     * @return an executor whose tasks run on this scheduler's threads with the given priority
+     */
+    Executor forPriority(int priority) {
+        return task -> executor.execute(new Job(task, priority, sequence.getAndIncrement()));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
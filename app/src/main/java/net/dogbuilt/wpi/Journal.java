@@ -0,0 +1,395 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A record of a pipeline run, written as the run goes, so a run that crashes can be resumed without
+ * redoing what it finished.
+ *
+ * <p>The journal records each warning with the targets it resolved to, that the checker finished,
+ * each target Specimin succeeded on, and the declarations read from each output. Every line is
+ * flushed as soon as it is written, so a crash loses at most the line being written. Specimin's
+ * outputs have to outlive the run for this to be any use, so resumable runs keep them in a
+ * {@link SpeciminCache}.
+ *
+ * <p>The file is line oriented, with tab separated fields, like {@link IncrementalState}'s:
+ *
+ * <pre>
+ * wpi-journal 1
+ * P project-directory checker fingerprint
+ * W path line checker column start-position end-position key
+ * T target-file type signature specimin-signature
+ * E
+ * O target-file type signature output-directory batch-size specimin-signature
+ * R target-file type signature output-directory input-count signature-count
+ * I path
+ * S signature
+ * X
+ * </pre>
+ *
+ * <p>{@code T} lines are the targets of the {@code W} line before them. {@code E} marks the end of
+ * the checker's warnings, {@code O} a Specimin output, and {@code R} the declarations in a
+ * target's output, with the inputs and signatures it counts following it. Targets minimized in one
+ * batch share an output directory, with an {@code O} line each giving the number of targets in the
+ * batch, and an output is only resumed once all of its batch's lines are there, so the output can
+ * still be divided between the whole batch. {@code X} marks a
+ * finished run. Warning paths are relative to the project directory, and warnings are written as
+ * {@link IncrementalState} writes them. A target's Specimin signature is only written if it differs
+ * from its signature, since the targets on these lines may be given to Specimin again.
+ */
+final class Journal implements Closeable {
+    private static final String HEADER = "wpi-journal 2";
+
+    /**
+     * A warning from a journal, with every target it resolved to, including ones an earlier
+     * warning already yielded.
+     */
+    record ResolvedWarning(Warning warning, List<SpeciminTarget> targets) {
+    }
+
+    private final String projectDirectory;
+    private final BufferedWriter writer;
+    /* what an earlier run finished, if this one is resuming it */
+    private final List<ResolvedWarning> warnings;
+    private final boolean checked;
+    private final Map<SpeciminTarget, String> outputs;
+    /* the targets minimized into each output directory */
+    private final Map<String, List<SpeciminTarget>> batches;
+    private final Map<SpeciminTarget, IncrementalState.TargetRecord> records;
+
+    private Journal(String projectDirectory, BufferedWriter writer, List<ResolvedWarning> warnings, boolean checked,
+                    Map<String, List<SpeciminTarget>> batches, Map<SpeciminTarget, IncrementalState.TargetRecord> records) {
+        this.projectDirectory = projectDirectory;
+        this.writer = writer;
+        this.warnings = warnings;
+        this.checked = checked;
+        this.outputs = new TreeMap<>();
+        batches.forEach((outputDirectory, batch) -> batch.forEach(target -> outputs.put(target, outputDirectory)));
+        this.batches = batches;
+        this.records = records;
+    }
+
+    /**
+     * Opens the journal for a run, keeping what the journal already holds if {@code resume} is set
+     * and it is for the same project, checker and project files, and starting it over otherwise.
+     */
+    static Journal open(Path file, String projectDirectory, String checker, boolean resume) throws IOException {
+        var fingerprint = fingerprint(projectDirectory);
+        var project = new String[]{"P", projectDirectory, checker, fingerprint};
+
+        var warnings = new ArrayList<ResolvedWarning>();
+        var batches = new TreeMap<String, List<SpeciminTarget>>();
+        var records = new TreeMap<SpeciminTarget, IncrementalState.TargetRecord>();
+        boolean checked = false;
+        if (resume && Files.isRegularFile(file)) {
+            var batchSizes = new TreeMap<String, Integer>();
+            checked = read(file, project, warnings, batches, batchSizes, records);
+            /* a batch whose lines were cut off is minimized again, so its output is divided between all its targets */
+            batches.entrySet().removeIf(batch -> batch.getValue().size() != batchSizes.get(batch.getKey()));
+        }
+        if (!checked) {
+            /* the checker will run again, and report these again */
+            warnings.clear();
+        }
+
+        /* the journal is rewritten with only what is still useful, then appended to */
+        var absolute = file.toAbsolutePath();
+        var temporary = Files.createTempFile(absolute.getParent(), "wpi-journal", ".tmp");
+        try (BufferedWriter rewritten = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            rewritten.write(HEADER);
+            rewritten.newLine();
+            writeLine(rewritten, project);
+            for (var warning : warnings) {
+                writeWarning(rewritten, projectDirectory, warning.warning(), warning.targets());
+            }
+            if (checked) {
+                writeLine(rewritten, "E");
+            }
+            for (var batch : batches.entrySet()) {
+                writeOutputs(rewritten, batch.getValue(), batch.getKey());
+            }
+            for (var record : records.values()) {
+                writeRecord(rewritten, record);
+            }
+        }
+        Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        var writer = Files.newBufferedWriter(absolute, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        return new Journal(projectDirectory, writer, warnings, checked, batches, records);
+    }
+
+    /**
+     * Reads what an earlier run journaled, stopping at the first line that is not complete.
+     *
+     * @return whether the earlier run's checker finished
+     */
+    private static boolean read(Path file, String[] project, List<ResolvedWarning> warnings,
+                                Map<String, List<SpeciminTarget>> batches, Map<String, Integer> batchSizes,
+                                Map<SpeciminTarget, IncrementalState.TargetRecord> records) throws IOException {
+        boolean checked = false;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine()))
+                return false;
+            var first = reader.readLine();
+            if (first == null || !first.equals(String.join("\t", project)))
+                return false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                var fields = line.split("\t", -1);
+                switch (fields[0]) {
+                    case "W" -> warnings.add(new ResolvedWarning(IncrementalState.parseWarning(fields), new ArrayList<>()));
+                    case "T" -> {
+                        if (!warnings.isEmpty())
+                            warnings.get(warnings.size() - 1).targets().add(target(fields, 4));
+                    }
+                    case "E" -> checked = true;
+                    case "O" -> {
+                        int batchSize = Integer.parseInt(fields[5]);
+                        if (Files.isDirectory(Path.of(fields[4]))) {
+                            var batch = batches.computeIfAbsent(fields[4], k -> new ArrayList<>());
+                            var target = target(fields, 6);
+                            if (!batch.contains(target))
+                                batch.add(target);
+                            batchSizes.put(fields[4], batchSize);
+                        }
+                    }
+                    case "R" -> {
+                        var record = readRecord(reader, fields);
+                        if (record == null)
+                            return checked;
+                        if (Files.isDirectory(Path.of(record.outputDirectory())))
+                            records.put(record.target(), record);
+                    }
+                    case "X" -> {
+                        /* finished, but the results are printed again from what is here */
+                    }
+                    default -> {
+                        return checked;
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            /* the line being written when the earlier run died; everything before it is intact */
+        }
+        return checked;
+    }
+
+    /**
+     * @return the record starting with the given {@code R} line, or null if it is cut off
+     */
+    private static IncrementalState.@Nullable TargetRecord readRecord(BufferedReader reader, String[] fields) throws IOException {
+        int inputCount = Integer.parseInt(fields[5]);
+        int signatureCount = Integer.parseInt(fields[6]);
+        var inputs = new LinkedHashSet<String>();
+        var signatures = new ArrayList<String>();
+        for (int i = 0; i < inputCount + signatureCount; i++) {
+            var line = reader.readLine();
+            if (line == null)
+                return null;
+            var parts = line.split("\t", -1);
+            var expected = i < inputCount ? "I" : "S";
+            if (parts.length != 2 || !parts[0].equals(expected))
+                return null;
+            (i < inputCount ? inputs : signatures).add(parts[1]);
+        }
+        return new IncrementalState.TargetRecord(target(fields, fields.length), fields[4], inputs,
+                SignatureSet.of(signatures, SignatureTable.shared()));
+    }
+
+    /**
+     * @param speciminSignature the index of the field with the target's Specimin signature, which is absent if it is
+     *                          the same as its signature
+     */
+    private static SpeciminTarget target(String[] fields, int speciminSignature) {
+        return new SpeciminTarget(fields[1], fields[3], SpeciminTool.SpeciminTargetType.valueOf(fields[2]),
+                fields.length > speciminSignature ? fields[speciminSignature] : fields[3]);
+    }
+
+    /**
+     * @return the target's Specimin signature as a field, or nothing if it is the same as its signature
+     */
+    private static List<String> speciminSignature(SpeciminTarget target) {
+        return target.speciminSignature().equals(target.signature()) ? List.of() : List.of(target.speciminSignature());
+    }
+
+    /**
+     * A cheap stand-in for the contents of the project: the path, size and modification time of
+     * every file under src and lib. A journal is only resumed for the same fingerprint.
+     */
+    private static String fingerprint(String projectDirectory) throws IOException {
+        var digest = Hashes.newDigest();
+        var project = Path.of(projectDirectory);
+        for (var directory : List.of(project.resolve("src"), project.resolve("lib"))) {
+            if (!Files.isDirectory(directory))
+                continue;
+            List<Path> files;
+            try (Stream<Path> paths = Files.walk(directory)) {
+                files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (var file : files) {
+                Hashes.update(digest, project.relativize(file).toString());
+                Hashes.update(digest, Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis());
+            }
+        }
+        return Hashes.hex(digest);
+    }
+
+    /**
+     * @return whether the earlier run's checker finished, so its warnings can be used instead of running it again
+     */
+    boolean checked() {
+        return checked;
+    }
+
+    /**
+     * @return the earlier run's warnings, with paths under the project directory, if its checker finished
+     */
+    List<ResolvedWarning> warnings() {
+        return warnings.stream()
+                .map(resolved -> {
+                    var warning = resolved.warning();
+                    return new ResolvedWarning(
+                            IncrementalState.inFile(projectDirectory + "/" + warning.file(), warning),
+                            resolved.targets());
+                })
+                .toList();
+    }
+
+    /**
+     * @return the output Specimin produced for the target in the earlier run, or null if it did not finish
+     */
+    @Nullable String output(SpeciminTarget target) {
+        return outputs.get(target);
+    }
+
+    /**
+     * @return the targets minimized together into an output directory in the earlier run, or an empty list if
+     * there were none
+     */
+    List<SpeciminTarget> batch(String outputDirectory) {
+        return batches.getOrDefault(outputDirectory, List.of());
+    }
+
+    /**
+     * @return the declarations read from the target's output in the earlier run, or null if they were not read
+     */
+    IncrementalState.@Nullable TargetRecord record(SpeciminTarget target) {
+        return records.get(target);
+    }
+
+    /**
+     * @return how much of the earlier run is being reused
+     */
+    String stats() {
+        return "Resumed from the journal: " + warnings.size() + " warnings, " + outputs.size() + " Specimin outputs, "
+                + records.size() + " sets of declarations";
+    }
+
+    /**
+     * Journals a warning with every target it resolved to.
+     */
+    synchronized void warning(Warning warning, List<SpeciminTarget> targets) throws IOException {
+        writeWarning(writer, projectDirectory, warning, targets);
+        writer.flush();
+    }
+
+    /**
+     * Journals that the checker has reported every warning.
+     */
+    synchronized void checkerFinished() throws IOException {
+        writeLine(writer, "E");
+        writer.flush();
+    }
+
+    /**
+     * Journals a Specimin output, with the targets minimized together into it. May be called from
+     * any thread; a journal that cannot be written to is reported as an {@link UncheckedIOException}.
+     */
+    synchronized void output(List<SpeciminTarget> batch, String outputDirectory) {
+        try {
+            writeOutputs(writer, batch, outputDirectory);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Journals the declarations read from a target's output.
+     */
+    synchronized void record(IncrementalState.TargetRecord record) throws IOException {
+        writeRecord(writer, record);
+        writer.flush();
+    }
+
+    /**
+     * Journals that the run finished.
+     */
+    synchronized void finished() throws IOException {
+        writeLine(writer, "X");
+        writer.flush();
+    }
+
+    private static void writeWarning(BufferedWriter writer, String projectDirectory, Warning warning,
+                                     List<SpeciminTarget> targets) throws IOException {
+        var prefix = projectDirectory + "/";
+        var file = warning.file().startsWith(prefix) ? warning.file().substring(prefix.length()) : warning.file();
+        writeLine(writer, IncrementalState.warningLine(file, warning));
+        for (var target : targets) {
+            var fields = new ArrayList<>(List.of("T", target.targetFile(), target.type().name(), target.signature()));
+            fields.addAll(speciminSignature(target));
+            writeLine(writer, fields.toArray(String[]::new));
+        }
+    }
+
+    private static void writeOutputs(BufferedWriter writer, List<SpeciminTarget> batch, String outputDirectory)
+            throws IOException {
+        for (var target : batch) {
+            var fields = new ArrayList<>(List.of("O", target.targetFile(), target.type().name(), target.signature(),
+                    outputDirectory, Integer.toString(batch.size())));
+            fields.addAll(speciminSignature(target));
+            writeLine(writer, fields.toArray(String[]::new));
+        }
+    }
+
+    private static void writeRecord(BufferedWriter writer, IncrementalState.TargetRecord record) throws IOException {
+        var target = record.target();
+        var signatures = record.signatures().signatures(SignatureTable.shared());
+        writeLine(writer, "R", target.targetFile(), target.type().name(), target.signature(), record.outputDirectory(),
+                Integer.toString(record.inputs().size()), Integer.toString(signatures.size()));
+        for (var input : record.inputs()) {
+            writeLine(writer, "I", input);
+        }
+        for (var signature : signatures) {
+            writeLine(writer, "S", signature);
+        }
+    }
+
+    private static void writeLine(BufferedWriter writer, String... fields) throws IOException {
+        writer.write(String.join("\t", fields));
+        writer.newLine();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
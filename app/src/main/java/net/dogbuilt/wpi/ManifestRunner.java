@@ -0,0 +1,189 @@
+package net.dogbuilt.wpi;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Runs the pipeline on every project listed in a manifest, several projects at a time, with the
+ * Specimin runs of all of them sharing one {@link JobScheduler}.
+ *
+ * <p>Projects start in order of estimated cost, largest first, and the Specimin runs of projects
+ * that started earlier have priority, so the largest projects finish as early as possible and
+ * smaller ones fill the slots they leave free. While one project is still being checked, the
+ * others' Specimin runs keep every slot busy, instead of the slots idling at the start and end of
+ * each project.
+ *
+ * <p>Each project gets a directory of its own under the results directory, with everything the
+ * pipeline printed for it in {@code output.txt}, Specimin's result for each target in
+ * {@code results.tsv}, and a {@code done} file once it has finished. Projects with a {@code done}
+ * file for the same checker are skipped, so an interrupted run can be started again with the same
+ * arguments. A project that fails is reported and does not stop the others. {@code summary.tsv}
+ * lists every project's status and wall time.
+ */
+final class ManifestRunner {
+    private static final String DONE = "done";
+
+    /**
+     * @param name          the project's directory name, which names its results directory
+     * @param estimatedCost the total size of its sources, in bytes
+     */
+    record Project(String name, String directory, long estimatedCost) {
+    }
+
+    private record ProjectResult(Project project, String status, long wallMillis, String error) {
+    }
+
+    private final Options options;
+    private final Pipeline.Shared shared;
+    private final JobScheduler scheduler;
+    private final List<Project> projects;
+    private int finished = 0;
+
+    private ManifestRunner(Options options, Pipeline.Shared shared, JobScheduler scheduler, List<Project> projects) {
+        this.options = options;
+        this.shared = shared;
+        this.scheduler = scheduler;
+        this.projects = projects;
+    }
+
+    /**
+     * Runs the pipeline on every project in the manifest, and writes the summary once they are all done.
+     */
+    static void run(Options options, Path manifest, Pipeline.Shared shared, JobScheduler scheduler)
+            throws IOException, InterruptedException {
+        var projects = readManifest(manifest);
+        System.out.println("Projects: " + projects.size());
+        Files.createDirectories(options.resultsDirectory);
+        new ManifestRunner(options, shared, scheduler, projects).runAll();
+    }
+
+    /**
+     * Reads the project directories in a manifest, one per line; blank lines and lines starting
+     * with # are skipped.
+     *
+     * @return the projects, costliest first
+     * @throws IllegalArgumentException if two projects have the same directory name
+     */
+    static List<Project> readManifest(Path manifest) throws IOException {
+        var projects = new ArrayList<Project>();
+        var names = new HashSet<String>();
+        for (var line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            var directory = line.strip();
+            if (directory.isEmpty() || directory.startsWith("#"))
+                continue;
+            /* like on the command line, without a trailing slash */
+            while (directory.length() > 1 && directory.endsWith("/"))
+                directory = directory.substring(0, directory.length() - 1);
+            var fileName = Path.of(directory).getFileName();
+            var name = fileName == null ? directory : fileName.toString();
+            if (!names.add(name)) {
+                throw new IllegalArgumentException("two projects in " + manifest + " are named " + name);
+            }
+            projects.add(new Project(name, directory, estimateCost(directory)));
+        }
+        projects.sort(Comparator.comparingLong(Project::estimatedCost).reversed());
+        return projects;
+    }
+
+    /* the checker and Specimin both scale with the amount of source, so its size is a fair guess */
+    private static long estimateCost(String directory) throws IOException {
+        var src = Path.of(directory, "src");
+        if (!Files.isDirectory(src))
+            return 0;
+        long size = 0;
+        try (Stream<Path> files = Files.walk(src)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                if (file.toString().endsWith(".java") && Files.isRegularFile(file))
+                    size += Files.size(file);
+            }
+        }
+        return size;
+    }
+
+    private void runAll() throws IOException, InterruptedException {
+        var drivers = Executors.newFixedThreadPool(options.parallelProjects);
+        var results = new ArrayList<ProjectResult>();
+        try {
+            var futures = new ArrayList<Future<ProjectResult>>();
+            for (int rank = 0; rank < projects.size(); rank++) {
+                var project = projects.get(rank);
+                int priority = rank;
+                futures.add(drivers.submit(() -> runProject(project, priority)));
+            }
+            for (var future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } finally {
+            drivers.shutdownNow();
+        }
+
+        var lines = new ArrayList<String>();
+        lines.add("project\tstatus\testimated-cost\twall-ms\terror");
+        for (var result : results) {
+            lines.add(String.join("\t",
+                    result.project().name(),
+                    result.status(),
+                    Long.toString(result.project().estimatedCost()),
+                    Long.toString(result.wallMillis()),
+                    result.error().replaceAll("\\s+", " ")));
+        }
+        Files.write(options.resultsDirectory.resolve("summary.tsv"), lines, StandardCharsets.UTF_8);
+        System.out.println("Failed projects: " + results.stream().filter(result -> result.status().equals("failed")).count());
+    }
+
+    private ProjectResult runProject(Project project, int priority) throws IOException, InterruptedException {
+        var directory = options.resultsDirectory.resolve(project.name());
+        Files.createDirectories(directory);
+        var done = directory.resolve(DONE);
+        if (Files.exists(done) && Files.readString(done, StandardCharsets.UTF_8).strip().equals(options.checker)) {
+            return report(new ProjectResult(project, "skipped", 0, ""));
+        }
+        Files.deleteIfExists(done);
+
+        var projectOptions = options.forProject(
+                project.directory(),
+                directory.resolve("results.tsv"),
+                options.logDirectory == null ? null : options.logDirectory.resolve(project.name()),
+                options.stateFile == null ? null : options.stateFile.resolve(project.name()),
+                options.checkpointDirectory == null ? null : options.checkpointDirectory.resolve(project.name()),
+                options.sourceIndexFile == null ? null : options.sourceIndexFile.resolve(project.name()));
+        if (options.stateFile != null) {
+            Files.createDirectories(options.stateFile);
+        }
+        if (options.sourceIndexFile != null) {
+            Files.createDirectories(options.sourceIndexFile);
+        }
+
+        long start = System.nanoTime();
+        try (var out = new PrintStream(Files.newOutputStream(directory.resolve("output.txt")), false, StandardCharsets.UTF_8)) {
+            new Pipeline(projectOptions, shared, scheduler.forPriority(priority), out).run();
+        } catch (IOException | RuntimeException e) {
+            return report(new ProjectResult(project, "failed", (System.nanoTime() - start) / 1_000_000, String.valueOf(e)));
+        }
+        Files.writeString(done, options.checker + System.lineSeparator(), StandardCharsets.UTF_8);
+        return report(new ProjectResult(project, "done", (System.nanoTime() - start) / 1_000_000, ""));
+    }
+
+    private synchronized ProjectResult report(ProjectResult result) {
+        finished++;
+        System.out.println("[" + finished + "/" + projects.size() + "] " + result.project().name() + ": " + result.status()
+                + (result.status().equals("skipped") ? "" : " in " + result.wallMillis() + " ms")
+                + (result.error().isEmpty() ? "" : " (" + result.error() + ")"));
+        return result;
+    }
+}
@@ -0,0 +1,295 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Where the time and memory of a run go: per-phase wall time, CPU time and allocation of the
+ * threads doing the work, peak resident memory of child processes, and counters.
+ *
+ * <p>A phase is measured by any number of spans, which may be open on several threads at once:
+ *
+ * <pre>
+ * try (var span = Metrics.shared().span("resolve")) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * <p>CPU time and allocation are those of the thread that opened the span, so the work of child
+ * processes only shows up in their wall time and memory. A child's memory is its peak resident set
+ * size, with its descendants', which we sample from /proc while it runs; elsewhere it is not
+ * recorded.
+ */
+final class Metrics {
+    private static final Metrics SHARED = new Metrics();
+    private static final long SAMPLE_MILLIS = 100;
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final ConcurrentHashMap<String, PhaseStats> phases = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<ChildWatch> watched = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "metrics");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /* guarded by this */
+    private @Nullable ScheduledFuture<?> sampling = null;
+    private @Nullable ScheduledFuture<?> progress = null;
+
+    private Metrics() {
+    }
+
+    /**
+     * @return the metrics shared by everything in this JVM.
+     */
+    static Metrics shared() {
+        return SHARED;
+    }
+
+    private static final class PhaseStats {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong wallNanos = new AtomicLong();
+        final AtomicLong maxWallNanos = new AtomicLong();
+        final AtomicLong cpuNanos = new AtomicLong();
+        final AtomicLong allocatedBytes = new AtomicLong();
+        final AtomicLong maxChildRssBytes = new AtomicLong();
+    }
+
+    private PhaseStats phase(String name) {
+        return phases.computeIfAbsent(name, k -> new PhaseStats());
+    }
+
+    /**
+     * Starts measuring one occurrence of a phase on the current thread, until the span is closed on the same thread.
+     */
+    Span span(String phase) {
+        return new Span(phase(phase));
+    }
+
+    final class Span implements AutoCloseable {
+        private final PhaseStats stats;
+        private final long startWall;
+        private final long startCpu;
+        private final long startAllocated;
+
+        private Span(PhaseStats stats) {
+            this.stats = stats;
+            this.startWall = System.nanoTime();
+            this.startCpu = threads.getCurrentThreadCpuTime();
+            this.startAllocated = threads.getCurrentThreadAllocatedBytes();
+        }
+
+        @Override
+        public void close() {
+            long wall = System.nanoTime() - startWall;
+            stats.count.incrementAndGet();
+            stats.wallNanos.addAndGet(wall);
+            stats.maxWallNanos.accumulateAndGet(wall, Math::max);
+            stats.cpuNanos.addAndGet(threads.getCurrentThreadCpuTime() - startCpu);
+            stats.allocatedBytes.addAndGet(threads.getCurrentThreadAllocatedBytes() - startAllocated);
+        }
+    }
+
+    void count(String counter) {
+        count(counter, 1);
+    }
+
+    void count(String counter, long amount) {
+        counters.computeIfAbsent(counter, k -> new AtomicLong()).addAndGet(amount);
+    }
+
+    long counter(String counter) {
+        var value = counters.get(counter);
+        return value == null ? 0 : value.get();
+    }
+
+    /**
+     * Samples the peak resident memory of a child process and its descendants until the watch is
+     * closed, and then records it against the phase.
+     */
+    ChildWatch watch(String phase, Process process) {
+        var watch = new ChildWatch(phase(phase), process.toHandle());
+        watched.add(watch);
+        startSampling();
+        return watch;
+    }
+
+    private synchronized void startSampling() {
+        if (sampling == null) {
+            sampling = sampler.scheduleAtFixedRate(this::sampleChildren, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    final class ChildWatch implements AutoCloseable {
+        private final PhaseStats stats;
+        private final ProcessHandle process;
+        private final AtomicLong peakRssBytes = new AtomicLong();
+
+        private ChildWatch(PhaseStats stats, ProcessHandle process) {
+            this.stats = stats;
+            this.process = process;
+        }
+
+        void sample() {
+            long rss = 0;
+            try (Stream<ProcessHandle> descendants = process.descendants()) {
+                for (var handle : Stream.concat(Stream.of(process), descendants).toList()) {
+                    rss += highWaterMark(handle.pid());
+                }
+            }
+            peakRssBytes.accumulateAndGet(rss, Math::max);
+        }
+
+        /**
+         * @return the highest memory use seen so far
+         */
+        long peakRssBytes() {
+            return peakRssBytes.get();
+        }
+
+        @Override
+        public void close() {
+            watched.remove(this);
+            if (process.isAlive())
+                sample();
+            stats.maxChildRssBytes.accumulateAndGet(peakRssBytes.get(), Math::max);
+        }
+    }
+
+    private void sampleChildren() {
+        for (var watch : watched) {
+            watch.sample();
+        }
+    }
+
+    /**
+     * @return the peak resident set size of a process in bytes, or 0 if it cannot be read
+     */
+    private static long highWaterMark(long pid) {
+        try {
+            for (var line : Files.readAllLines(Path.of("/proc/" + pid + "/status"), StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmHWM:")) {
+                    /* e.g. "VmHWM:     123456 kB" */
+                    return Long.parseLong(line.substring("VmHWM:".length()).replace("kB", "").trim()) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            /* not on Linux, or the process has exited */
+        }
+        return 0;
+    }
+
+    /**
+     * Prints a line with the counters to standard error every second, overwriting the previous one,
+     * until {@link #stopProgress} is called.
+     *
+     * @param counters the counters to show, in order
+     */
+    synchronized void startProgress(List<String> counters) {
+        if (progress != null)
+            return;
+        progress = sampler.scheduleAtFixedRate(() -> System.err.print("\r" + progressLine(counters)), 1, 1, TimeUnit.SECONDS);
+    }
+
+    synchronized void stopProgress() {
+        if (progress == null)
+            return;
+        progress.cancel(false);
+        progress = null;
+        System.err.println();
+    }
+
+    private String progressLine(List<String> names) {
+        var parts = new ArrayList<String>();
+        for (var name : names) {
+            parts.add(name + ": " + counter(name));
+        }
+        return String.join(", ", parts);
+    }
+
+    /**
+     * Writes everything recorded so far to a file, as CSV if its name ends in {@code .csv} and as JSON otherwise.
+     */
+    void write(Path file) throws IOException {
+        var report = file.toString().endsWith(".csv") ? toCsv() : toJson();
+        Files.writeString(file, report, StandardCharsets.UTF_8);
+    }
+
+    String toJson() {
+        var json = new StringBuilder("{\n  \"phases\": {");
+        var first = true;
+        for (var phase : sortedPhases().entrySet()) {
+            var stats = phase.getValue();
+            json.append(first ? "\n" : ",\n");
+            first = false;
+            json.append("    \"").append(phase.getKey()).append("\": {")
+                    .append("\"count\": ").append(stats.count.get())
+                    .append(", \"wallMillis\": ").append(stats.wallNanos.get() / 1_000_000)
+                    .append(", \"maxWallMillis\": ").append(stats.maxWallNanos.get() / 1_000_000)
+                    .append(", \"cpuMillis\": ").append(stats.cpuNanos.get() / 1_000_000)
+                    .append(", \"allocatedBytes\": ").append(stats.allocatedBytes.get())
+                    .append(", \"maxChildRssBytes\": ").append(stats.maxChildRssBytes.get())
+                    .append('}');
+        }
+        json.append("\n  },\n  \"counters\": {");
+        first = true;
+        for (var counter : sortedCounters().entrySet()) {
+            json.append(first ? "\n" : ",\n");
+            first = false;
+            json.append("    \"").append(counter.getKey()).append("\": ").append(counter.getValue());
+        }
+        json.append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * @return one row per phase and one per counter; a counter's value is in the count column
+     */
+    String toCsv() {
+        var csv = new StringBuilder("kind,name,count,wall_ms,max_wall_ms,cpu_ms,allocated_bytes,max_child_rss_bytes\n");
+        for (var phase : sortedPhases().entrySet()) {
+            var stats = phase.getValue();
+            csv.append("phase,").append(phase.getKey())
+                    .append(',').append(stats.count.get())
+                    .append(',').append(stats.wallNanos.get() / 1_000_000)
+                    .append(',').append(stats.maxWallNanos.get() / 1_000_000)
+                    .append(',').append(stats.cpuNanos.get() / 1_000_000)
+                    .append(',').append(stats.allocatedBytes.get())
+                    .append(',').append(stats.maxChildRssBytes.get())
+                    .append('\n');
+        }
+        for (var counter : sortedCounters().entrySet()) {
+            csv.append("counter,").append(counter.getKey()).append(',').append(counter.getValue()).append(",,,,,\n");
+        }
+        return csv.toString();
+    }
+
+    private Map<String, PhaseStats> sortedPhases() {
+        return new TreeMap<>(phases);
+    }
+
+    private Map<String, Long> sortedCounters() {
+        var sorted = new TreeMap<String, Long>();
+        counters.forEach((name, value) -> sorted.put(name, value.get()));
+        return sorted;
+    }
+}
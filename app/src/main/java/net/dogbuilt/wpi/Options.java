@@ -0,0 +1,340 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Command line options for {@link App}.
+ *
+ * <p>Options are given as {@code --name value}, or just {@code --name} for flags, and may appear anywhere on the command line; the
+ * remaining arguments are the checker and the project directory, in that order. With {@code --manifest}, the projects come
+ * from the manifest instead, and only the checker is given.
+ */
+final class Options {
+    static final String USAGE = """
+            usage: app [options] checker[,checker...] project-directory
+                   app [options] --manifest FILE checker[,checker...]
+              --checker-mode MODE
+                                script: run get-error-lines.sh (default)
+                                in-process: run the checker in this JVM through javax.tools
+              --checker-shards N
+                                check up to N groups of packages in parallel (default: 1)
+              --compare-checker-shards
+                                also check everything in a single run and report the speedup and
+                                any warnings only one of the runs found
+              --resolve-types   name targets' parameter types by their erasure, fully qualified, resolving
+                                them against src, the jars in lib and the JDK (default: as written)
+              --jobs N          number of Specimin processes to run at once (default: number of cores)
+              --max-heap SIZE   maximum heap for each Specimin process, e.g. 2g (default: the JVM's default)
+              --specimin-mode MODE
+                                process: start a JVM per target (default)
+                                in-process: load Specimin into this JVM
+                                daemon: send targets to long-lived Specimin worker processes
+              --in-process-reuse N
+                                targets each in-process Specimin class loader runs before it is
+                                replaced (default: 1, i.e. fresh static state for every target)
+              --daemons N       number of daemon workers (default: --jobs)
+              --recycle-after N targets a daemon worker runs before it is replaced (default: 100)
+              --recycle-heap-mb N
+                                replace a daemon worker once it uses more than N MB of heap (default: never)
+              --specimin-timeout SECONDS
+                                kill Specimin on a target after SECONDS, with anything it started
+                                (process and daemon modes; default: never)
+              --max-rss-mb N    kill a Specimin process once it and its children use more than N MB
+                                of memory (process mode; default: never)
+              --retries N       run Specimin up to N more times on a target it fails on (default: 1)
+              --specimin-logs DIR
+                                write each target's Specimin output to its own file in DIR as it is
+                                produced (default: only keep the last lines, to report failures)
+              --results FILE    write whether Specimin succeeded on each target, after how many
+                                attempts, and its output directory or error, to FILE
+              --output-store DIR
+                                store each distinct file in Specimin's outputs once in DIR, hard
+                                linking the outputs to it (default: DIR/files under --cache-dir,
+                                or a temporary directory)
+              --no-output-store don't deduplicate Specimin's outputs on disk
+              --batch-by MODE   none: run Specimin once per target (default)
+                                file: minimize targets in the same file together
+                                package: minimize targets in the same package together
+              --batch-size N    the most targets to minimize together (default: 16)
+              --cache-dir DIR   reuse Specimin outputs from earlier runs stored in DIR, and store new ones there
+              --incremental FILE
+                                remember this run in FILE, and only redo work affected by files changed since
+                                the run last remembered there
+              --checkpoint DIR  journal the run's progress in DIR, keeping Specimin's outputs there
+                                unless --cache-dir is given
+              --resume          carry on from the journal in the --checkpoint directory instead of
+                                starting over
+              --source-index FILE
+                                keep the index of the project's sources in FILE, so the next run only
+                                indexes files that changed (default: in the --checkpoint directory)
+              --collision-matrix
+                                print how many declarations each pair of Specimin outputs share
+              --metrics-out FILE
+                                write the time, CPU, allocation and child memory of each phase and
+                                counts of warnings, targets and Specimin failures to FILE, as CSV if
+                                FILE ends in .csv and as JSON otherwise
+              --progress        show a live progress line on standard error
+              --manifest FILE   run on every project directory listed in FILE, one per line, sharing
+                                the --jobs Specimin slots between them; --specimin-logs,
+                                --incremental, --checkpoint and --source-index then name
+                                directories with an entry per project
+              --results-dir DIR where to write each project's output, results and checkpoint in
+                                manifest mode (default: wpi-results)
+              --parallel-projects N
+                                projects to run the checker and pipeline for at once in manifest
+                                mode (default: 2)""";
+
+    enum CheckerMode {
+        SCRIPT,
+        IN_PROCESS
+    }
+
+    enum SpeciminMode {
+        PROCESS,
+        IN_PROCESS,
+        DAEMON
+    }
+
+    final String checker;
+    final String projectDirectory;
+    final CheckerMode checkerMode;
+    final int checkerShards;
+    final boolean compareCheckerShards;
+    final boolean resolveTypes;
+    final int jobs;
+    final @Nullable String maxHeap;
+    final SpeciminMode speciminMode;
+    final int inProcessReuse;
+    final int daemons;
+    final int recycleAfter;
+    final long recycleHeapBytes;
+    final SpeciminLimits speciminLimits;
+    final int retries;
+    final @Nullable Path resultsFile;
+    final @Nullable Path logDirectory;
+    final @Nullable Path outputStore;
+    final boolean deduplicateOutputs;
+    final SpeciminPool.BatchMode batchMode;
+    final int batchSize;
+    final @Nullable Path cacheDirectory;
+    final @Nullable Path stateFile;
+    final @Nullable Path checkpointDirectory;
+    final boolean resume;
+    final @Nullable Path sourceIndexFile;
+    final boolean collisionMatrix;
+    final @Nullable Path metricsFile;
+    final boolean progress;
+    final @Nullable Path manifest;
+    final Path resultsDirectory;
+    final int parallelProjects;
+
+    private Options(String checker, String projectDirectory, CheckerMode checkerMode, int checkerShards,
+                    boolean compareCheckerShards, boolean resolveTypes, int jobs, @Nullable String maxHeap,
+                    SpeciminMode speciminMode, int inProcessReuse, int daemons, int recycleAfter, long recycleHeapBytes,
+                    SpeciminLimits speciminLimits, int retries, @Nullable Path resultsFile, @Nullable Path logDirectory,
+                    @Nullable Path outputStore, boolean deduplicateOutputs, SpeciminPool.BatchMode batchMode, int batchSize,
+                    @Nullable Path cacheDirectory, @Nullable Path stateFile, @Nullable Path checkpointDirectory,
+                    boolean resume, @Nullable Path sourceIndexFile, boolean collisionMatrix,
+                    @Nullable Path metricsFile, boolean progress, @Nullable Path manifest, Path resultsDirectory,
+                    int parallelProjects) {
+        this.checker = checker;
+        this.projectDirectory = projectDirectory;
+        this.checkerMode = checkerMode;
+        this.checkerShards = checkerShards;
+        this.compareCheckerShards = compareCheckerShards;
+        this.resolveTypes = resolveTypes;
+        this.jobs = jobs;
+        this.maxHeap = maxHeap;
+        this.speciminMode = speciminMode;
+        this.inProcessReuse = inProcessReuse;
+        this.daemons = daemons;
+        this.recycleAfter = recycleAfter;
+        this.recycleHeapBytes = recycleHeapBytes;
+        this.speciminLimits = speciminLimits;
+        this.retries = retries;
+        this.resultsFile = resultsFile;
+        this.logDirectory = logDirectory;
+        this.outputStore = outputStore;
+        this.deduplicateOutputs = deduplicateOutputs;
+        this.batchMode = batchMode;
+        this.batchSize = batchSize;
+        this.cacheDirectory = cacheDirectory;
+        this.stateFile = stateFile;
+        this.checkpointDirectory = checkpointDirectory;
+        this.resume = resume;
+        this.sourceIndexFile = sourceIndexFile;
+        this.collisionMatrix = collisionMatrix;
+        this.metricsFile = metricsFile;
+        this.progress = progress;
+        this.manifest = manifest;
+        this.resultsDirectory = resultsDirectory;
+        this.parallelProjects = parallelProjects;
+    }
+
+    /**
+     * @return these options for one project of a manifest, with its own results, logs, state, checkpoint and
+     * source index
+     */
+    Options forProject(String projectDirectory, @Nullable Path resultsFile, @Nullable Path logDirectory,
+                       @Nullable Path stateFile, @Nullable Path checkpointDirectory, @Nullable Path sourceIndexFile) {
+        return new Options(checker, projectDirectory, checkerMode, checkerShards, compareCheckerShards, resolveTypes,
+                jobs, maxHeap, speciminMode, inProcessReuse, daemons, recycleAfter, recycleHeapBytes, speciminLimits, retries,
+                resultsFile, logDirectory, outputStore, deduplicateOutputs, batchMode, batchSize, cacheDirectory,
+                stateFile, checkpointDirectory, resume, sourceIndexFile, collisionMatrix, metricsFile, progress, null,
+                resultsDirectory,
+                parallelProjects);
+    }
+
+    /**
+     * @param args the arguments passed to main
+     * @return the parsed options
+     * @throws IllegalArgumentException if the arguments are malformed, with a message suitable for the user
+     */
+    static Options parse(String[] args) {
+        var positional = new ArrayList<String>();
+        var checkerMode = CheckerMode.SCRIPT;
+        int checkerShards = 1;
+        boolean compareCheckerShards = false;
+        boolean resolveTypes = false;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        @Nullable String maxHeap = null;
+        var speciminMode = SpeciminMode.PROCESS;
+        int inProcessReuse = 1;
+        int daemons = 0;
+        int recycleAfter = 100;
+        long recycleHeapBytes = 0;
+        long timeoutMillis = 0;
+        long maxRssBytes = 0;
+        int retries = 1;
+        @Nullable Path resultsFile = null;
+        @Nullable Path logDirectory = null;
+        @Nullable Path outputStore = null;
+        boolean deduplicateOutputs = true;
+        var batchMode = SpeciminPool.BatchMode.NONE;
+        int batchSize = 16;
+        @Nullable Path cacheDirectory = null;
+        @Nullable Path stateFile = null;
+        @Nullable Path checkpointDirectory = null;
+        boolean resume = false;
+        @Nullable Path sourceIndexFile = null;
+        boolean collisionMatrix = false;
+        @Nullable Path metricsFile = null;
+        boolean progress = false;
+        @Nullable Path manifest = null;
+        var resultsDirectory = Path.of("wpi-results");
+        int parallelProjects = 2;
+
+        for (int i = 0; i < args.length; i++) {
+            var arg = args[i];
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+                continue;
+            }
+            /* flags that do not take a value */
+            if (arg.equals("--collision-matrix")) {
+                collisionMatrix = true;
+                continue;
+            }
+            if (arg.equals("--compare-checker-shards")) {
+                compareCheckerShards = true;
+                continue;
+            }
+            if (arg.equals("--resolve-types")) {
+                resolveTypes = true;
+                continue;
+            }
+            if (arg.equals("--no-output-store")) {
+                deduplicateOutputs = false;
+                continue;
+            }
+            if (arg.equals("--resume")) {
+                resume = true;
+                continue;
+            }
+            if (arg.equals("--progress")) {
+                progress = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException(arg + " expects a value");
+            }
+            var value = args[++i];
+            switch (arg) {
+                case "--checker-mode" -> checkerMode = parseEnum(arg, value, CheckerMode.class);
+                case "--checker-shards" -> checkerShards = parsePositiveInt(arg, value);
+                case "--jobs" -> jobs = parsePositiveInt(arg, value);
+                case "--max-heap" -> maxHeap = value;
+                case "--specimin-mode" -> speciminMode = parseEnum(arg, value, SpeciminMode.class);
+                case "--in-process-reuse" -> inProcessReuse = parsePositiveInt(arg, value);
+                case "--daemons" -> daemons = parsePositiveInt(arg, value);
+                case "--recycle-after" -> recycleAfter = parsePositiveInt(arg, value);
+                case "--recycle-heap-mb" -> recycleHeapBytes = parsePositiveInt(arg, value) * 1024L * 1024L;
+                case "--specimin-timeout" -> timeoutMillis = parsePositiveInt(arg, value) * 1000L;
+                case "--max-rss-mb" -> maxRssBytes = parsePositiveInt(arg, value) * 1024L * 1024L;
+                case "--retries" -> retries = parseInt(arg, value, 0);
+                case "--results" -> resultsFile = Path.of(value);
+                case "--specimin-logs" -> logDirectory = Path.of(value);
+                case "--output-store" -> outputStore = Path.of(value);
+                case "--batch-by" -> batchMode = parseEnum(arg, value, SpeciminPool.BatchMode.class);
+                case "--batch-size" -> batchSize = parsePositiveInt(arg, value);
+                case "--cache-dir" -> cacheDirectory = Path.of(value);
+                case "--incremental" -> stateFile = Path.of(value);
+                case "--checkpoint" -> checkpointDirectory = Path.of(value);
+                case "--source-index" -> sourceIndexFile = Path.of(value);
+                case "--metrics-out" -> metricsFile = Path.of(value);
+                case "--manifest" -> manifest = Path.of(value);
+                case "--results-dir" -> resultsDirectory = Path.of(value);
+                case "--parallel-projects" -> parallelProjects = parsePositiveInt(arg, value);
+                default -> throw new IllegalArgumentException("unknown option " + arg);
+            }
+        }
+
+        if (manifest != null ? positional.isEmpty() : positional.size() < 2) {
+            throw new IllegalArgumentException(manifest != null
+                    ? "one argument expected with --manifest: checker"
+                    : "two arguments expected: checker, project directory");
+        }
+        if (resume && checkpointDirectory == null) {
+            throw new IllegalArgumentException("--resume needs --checkpoint");
+        }
+        /* in manifest mode, each project gets its own options from forProject */
+        var projectDirectory = manifest != null ? "" : positional.get(1);
+        return new Options(positional.get(0), projectDirectory, checkerMode, checkerShards,
+                compareCheckerShards, resolveTypes, jobs, maxHeap, speciminMode, inProcessReuse,
+                daemons == 0 ? jobs : daemons, recycleAfter, recycleHeapBytes,
+                new SpeciminLimits(timeoutMillis, maxRssBytes), retries, resultsFile, logDirectory,
+                outputStore, deduplicateOutputs, batchMode, batchSize, cacheDirectory, stateFile, checkpointDirectory,
+                resume, sourceIndexFile, collisionMatrix, metricsFile, progress, manifest, resultsDirectory,
+                parallelProjects);
+    }
+
+    private static int parsePositiveInt(String option, String value) {
+        return parseInt(option, value, 1);
+    }
+
+    private static int parseInt(String option, String value, int minimum) {
+        int parsed;
+        try {
+            parsed = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number, got " + value);
+        }
+        if (parsed < minimum) {
+            throw new IllegalArgumentException(option + " must be at least " + minimum);
+        }
+        return parsed;
+    }
+
+    /* enum constants are spelled in lower case with dashes on the command line, e.g. in-process */
+    private static <E extends Enum<E>> E parseEnum(String option, String value, Class<E> type) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(option + " does not accept " + value);
+        }
+    }
+}
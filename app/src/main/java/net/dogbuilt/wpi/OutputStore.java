@@ -0,0 +1,162 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores each distinct file in Specimin's outputs once, and reads the declarations in each distinct
+ * file once.
+ *
+ * <p>Specimin outputs for targets in the same project mostly consist of the same stub files. Once
+ * an output is {@linkplain #deduplicate deduplicated}, each of its Java files is a hard link to a
+ * file in the store named after the hash of its contents, so identical files share their disk
+ * space. Where hard links are not possible, for example across file systems, files are left as
+ * they are.
+ *
+ * <p>Declarations are memoized by content hash whether or not there is a store. The hash of a
+ * deduplicated file is remembered by its file key (its inode, on Unix), so reading its declarations
+ * again does not even read the file.
+ *
+ * <p>Files in the store must not be modified, since every output they were linked into would
+ * change with them. All methods may be called from several threads at once.
+ */
+final class OutputStore {
+    private final @Nullable Path directory;
+    /* content hash of each file in the store, by file key */
+    private final ConcurrentHashMap<Object, String> hashes = new ConcurrentHashMap<>();
+    /* the declarations of each distinct file, by content hash */
+    private final ConcurrentHashMap<String, SignatureSet> declarations = new ConcurrentHashMap<>();
+    private final SignatureTable table;
+
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * @param directory where to store distinct files, or null to only memoize declarations
+     * @param table     the table the declarations are interned in
+     */
+    OutputStore(@Nullable Path directory, SignatureTable table) throws IOException {
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        this.directory = directory;
+        this.table = table;
+    }
+
+    /**
+     * Replaces every Java file in a Specimin output with a link to the store's copy of its
+     * contents, adding the contents to the store if they are new.
+     */
+    void deduplicate(String outputDirectory) throws IOException {
+        if (directory == null)
+            return;
+        for (var file : SpeciminTool.findAllJavaFilesInMinimizedDir(Path.of(outputDirectory))) {
+            deduplicateFile(directory, file.toPath());
+        }
+    }
+
+    private void deduplicateFile(Path directory, Path file) throws IOException {
+        files.incrementAndGet();
+        var hash = Hashes.ofFile(file);
+        var stored = directory.resolve(hash.substring(0, 2)).resolve(hash + ".java");
+        if (!Files.exists(stored)) {
+            Files.createDirectories(stored.getParent());
+            try {
+                Files.createLink(stored, file);
+                remember(file, hash);
+                return;
+            } catch (FileAlreadyExistsException e) {
+                /* another output with the same file got there first; link to theirs below */
+            } catch (IOException | UnsupportedOperationException e) {
+                /* no hard links here; the file keeps its own copy */
+                return;
+            }
+        }
+        remember(stored, hash);
+        if (Files.isSameFile(stored, file))
+            return;
+
+        long size = Files.size(file);
+        /* link next to the file and rename it over the file, so the file is never missing */
+        var link = file.resolveSibling(file.getFileName() + ".link");
+        try {
+            Files.createLink(link, stored);
+        } catch (IOException | UnsupportedOperationException e) {
+            return;
+        }
+        Files.move(link, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        duplicates.incrementAndGet();
+        bytesSaved.addAndGet(size);
+    }
+
+    private void remember(Path file, String hash) throws IOException {
+        var key = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        if (key != null) {
+            hashes.put(key, hash);
+        }
+    }
+
+    /**
+     * @return the fields and methods declared in a Specimin output, as
+     * {@link SpeciminTool#minimizedFilesFieldsAndMethods} finds them
+     */
+    SignatureSet fieldsAndMethods(String outputDirectory) throws IOException {
+        var dir = Path.of(outputDirectory);
+        if (!Files.isDirectory(dir)) {
+            return SignatureSet.EMPTY;
+        }
+        var sets = new ArrayList<SignatureSet>();
+        for (var file : SpeciminTool.findAllJavaFilesInMinimizedDir(dir)) {
+            sets.add(fieldsAndMethods(file));
+        }
+        return sets.isEmpty() ? SignatureSet.EMPTY : SignatureSet.union(sets);
+    }
+
+    /**
+     * @return the fields and methods each target in a batch needs, out of the batch's Specimin output
+     */
+    Map<SpeciminTarget, SignatureSet> fieldsAndMethods(String outputDirectory, List<SpeciminTarget> batch) throws IOException {
+        var sets = new LinkedHashMap<SpeciminTarget, SignatureSet>();
+        for (var entry : BatchSplitter.split(outputDirectory, batch).entrySet()) {
+            sets.put(entry.getKey(), SignatureSet.of(entry.getValue(), table));
+        }
+        return sets;
+    }
+
+    private SignatureSet fieldsAndMethods(File file) throws IOException {
+        var hash = hashOf(file.toPath());
+        var known = declarations.get(hash);
+        if (known != null) {
+            Metrics.shared().count("signatures.memoized");
+            return known;
+        }
+        var parsed = SignatureSet.of(SpeciminTool.fieldsAndMethods(file), table);
+        var raced = declarations.putIfAbsent(hash, parsed);
+        return raced == null ? parsed : raced;
+    }
+
+    private String hashOf(Path file) throws IOException {
+        var key = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        var hash = key == null ? null : hashes.get(key);
+        return hash != null ? hash : Hashes.ofFile(file);
+    }
+
+    String stats() {
+        return "Output store: " + files.get() + " files, " + duplicates.get() + " duplicates, "
+                + bytesSaved.get() / 1024 + " KB saved, " + declarations.size() + " distinct files parsed";
+    }
+}
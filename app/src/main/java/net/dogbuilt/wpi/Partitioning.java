@@ -0,0 +1,207 @@
+package net.dogbuilt.wpi;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Groups Specimin outputs into partitions: two outputs are in the same partition if they share a
+ * declaration, directly or through a chain of other outputs.
+ *
+ * <p>Rather than intersecting every pair of outputs, we build an inverted index from each
+ * declaration to the outputs containing it, and union together the outputs listed for each
+ * declaration. With path compression and union by size, this is near-linear in the total number of
+ * declarations across all outputs. Declarations are {@link SignatureTable} IDs, so the index is a
+ * pair of flat int arrays rather than a hash map.
+ *
+ * <p>This is not what the pairwise merging it replaced reported: that merging only repointed one of the
+ * merged outputs at the union, so outputs merged earlier kept stale partitions, which were counted as
+ * partitions of their own. The conflict and declaration counts are the same.
+ */
+final class Partitioning {
+    private Partitioning() {
+        throw new AssertionError("Cannot instantiate Partitioning");
+    }
+
+    /**
+     * @param partitionSizes       the number of outputs in each partition, largest first
+     * @param conflictDeclarations the number of declarations that appear in more than one output
+     * @param declarations         the number of distinct declarations in any output
+     */
+    record Result(List<Integer> partitionSizes, int conflictDeclarations, int declarations) {
+        int partitionCount() {
+            return partitionSizes.size();
+        }
+
+        float conflictRatio() {
+            return ((float) conflictDeclarations) / declarations;
+        }
+    }
+
+    /**
+     * @param outputs the declarations in each Specimin output; outputs with the same declarations should be passed once
+     */
+    static Result compute(List<SignatureSet> outputs) {
+        var index = new InvertedIndex(outputs);
+
+        var partitions = new UnionFind(outputs.size());
+        int conflictDeclarations = 0;
+        int declarations = 0;
+        for (int id = 0; id < index.idBound(); id++) {
+            int start = index.start(id);
+            int end = index.end(id);
+            if (end - start >= 1)
+                declarations++;
+            if (end - start < 2)
+                continue;
+            conflictDeclarations++;
+            for (int i = start + 1; i < end; i++) {
+                partitions.union(index.output(start), index.output(i));
+            }
+        }
+
+        var sizes = new ArrayList<Integer>();
+        for (int i = 0; i < outputs.size(); i++) {
+            if (partitions.find(i) == i) {
+                sizes.add(partitions.size(i));
+            }
+        }
+        sizes.sort(Comparator.reverseOrder());
+
+        return new Result(sizes, conflictDeclarations, declarations);
+    }
+
+    /**
+     * Prints a matrix with the number of declarations each pair of outputs share, and each output's
+     * size on the diagonal. This is quadratic in the number of outputs, so it is only for small
+     * projects and debugging.
+     */
+    static void printCollisionMatrix(List<SignatureSet> outputs, PrintStream out) {
+        var index = new InvertedIndex(outputs);
+
+        out.println("Collision matrix");
+        for (int i = 0; i < outputs.size(); i++) {
+            var output = outputs.get(i);
+            var row = new int[outputs.size()];
+            for (int k = 0; k < output.size(); k++) {
+                int id = output.id(k);
+                for (int j = index.start(id); j < index.end(id); j++) {
+                    row[index.output(j)]++;
+                }
+            }
+            var line = new StringBuilder();
+            for (int count : row) {
+                line.append(count).append('\t');
+            }
+            out.println(line);
+        }
+        out.flush();
+    }
+
+    /**
+     * For each declaration ID, the indices of the outputs containing it, in increasing order; stored
+     * as one array of output indices, grouped by ID, and an array of where each ID's group starts.
+     */
+    private static final class InvertedIndex {
+        private final int[] starts;
+        private final int[] outputs;
+
+        InvertedIndex(List<SignatureSet> sets) {
+            int idBound = 0;
+            int total = 0;
+            for (var set : sets) {
+                idBound = Math.max(idBound, set.idBound());
+                total += set.size();
+            }
+
+            /* count each ID's outputs, then turn the counts into start offsets */
+            starts = new int[idBound + 1];
+            for (var set : sets) {
+                for (int k = 0; k < set.size(); k++) {
+                    starts[set.id(k) + 1]++;
+                }
+            }
+            for (int id = 0; id < idBound; id++) {
+                starts[id + 1] += starts[id];
+            }
+
+            outputs = new int[total];
+            var next = Arrays.copyOf(starts, idBound);
+            for (int i = 0; i < sets.size(); i++) {
+                var set = sets.get(i);
+                for (int k = 0; k < set.size(); k++) {
+                    outputs[next[set.id(k)]++] = i;
+                }
+            }
+        }
+
+        int idBound() {
+            return starts.length - 1;
+        }
+
+        int start(int id) {
+            return starts[id];
+        }
+
+        int end(int id) {
+            return starts[id + 1];
+        }
+
+        int output(int position) {
+            return outputs[position];
+        }
+    }
+
+    /**
+     * Disjoint sets over 0 to n - 1, with path compression and union by size.
+     */
+    private static final class UnionFind {
+        private final int[] parent;
+        private final int[] size;
+
+        UnionFind(int n) {
+            parent = new int[n];
+            size = new int[n];
+            for (int i = 0; i < n; i++) {
+                parent[i] = i;
+                size[i] = 1;
+            }
+        }
+
+        int find(int element) {
+            int root = element;
+            while (parent[root] != root) {
+                root = parent[root];
+            }
+            while (parent[element] != root) {
+                int next = parent[element];
+                parent[element] = root;
+                element = next;
+            }
+            return root;
+        }
+
+        void union(int a, int b) {
+            int rootA = find(a);
+            int rootB = find(b);
+            if (rootA == rootB)
+                return;
+            if (size[rootA] < size[rootB]) {
+                int swap = rootA;
+                rootA = rootB;
+                rootB = swap;
+            }
+            parent[rootB] = rootA;
+            size[rootA] += size[rootB];
+        }
+
+        /**
+         * @return the size of the set whose root is {@code root}
+         */
+        int size(int root) {
+            return size[root];
+        }
+    }
+}
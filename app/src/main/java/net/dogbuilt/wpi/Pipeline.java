@@ -0,0 +1,363 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the checker on one project, minimizes the targets of its warnings with Specimin and
+ * partitions the outputs, printing everything it finds to one stream.
+ *
+ * <p>What can be shared between projects, such as the Specimin executor and the threads Specimin
+ * runs on, is passed in, so several pipelines can run at once in the same JVM.
+ *
+ * <p>The project's sources are {@linkplain SourceIndex indexed} before anything else, and the index
+ * is kept in the checkpoint directory, or a file of its own, for the next run.
+ *
+ * <p>With a checkpoint directory, the run is {@linkplain Journal journaled} as it goes, and Specimin's
+ * outputs are kept in a cache there unless there is a cache already. A run resuming from the
+ * journal reuses the warnings if the checker finished, every Specimin output, and every set of
+ * declarations read from one, and only does the rest.
+ */
+final class Pipeline {
+    /**
+     * What every project in a run shares.
+     *
+     * @param speciminPath the Specimin jar, which is part of each Specimin cache key
+     */
+    record Shared(CheckerRunner checkerRunner, SpeciminExecutor specimin, OutputStore store, Path speciminPath) {
+    }
+
+    private final Options options;
+    private final Shared shared;
+    private final Executor jobs;
+    private final PrintStream out;
+
+    /**
+     * @param options the options for this project
+     * @param jobs    runs the project's Specimin runs
+     * @param out     where to print the project's results
+     */
+    Pipeline(Options options, Shared shared, Executor jobs, PrintStream out) {
+        this.options = options;
+        this.shared = shared;
+        this.jobs = jobs;
+        this.out = out;
+    }
+
+    void run() throws IOException, InterruptedException {
+        var src = options.projectDirectory + "/src/";
+        var lib = options.projectDirectory + "/lib/";
+
+        /* the later stages look up the sources in the index rather than reading them */
+        var sourceIndexFile = options.sourceIndexFile != null || options.checkpointDirectory == null
+                ? options.sourceIndexFile
+                : options.checkpointDirectory.resolve("source-index");
+        SourceIndex sources;
+        try (var span = Metrics.shared().span("index")) {
+            var earlier = sourceIndexFile == null ? null : SourceIndex.load(sourceIndexFile);
+            sources = SourceIndex.build(Path.of(src), earlier);
+            if (sourceIndexFile != null) {
+                var parent = sourceIndexFile.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                sources.save(sourceIndexFile);
+            }
+        }
+        out.println(sources.stats());
+
+        /* in incremental mode, only what depends on files changed since the last run is redone */
+        @Nullable IncrementalState previous = null;
+        Map<String, String> fileHashes = Map.of();
+        Set<String> changedFiles = Set.of();
+        if (options.stateFile != null) {
+            previous = IncrementalState.load(options.stateFile);
+            fileHashes = IncrementalState.hashInputs(options.projectDirectory, sources);
+            if (previous != null) {
+                changedFiles = previous.changedFiles(fileHashes);
+                out.println("Changed files since the last run: " + changedFiles.size());
+            }
+        }
+
+        @Nullable Journal journal = null;
+        var cacheDirectory = options.cacheDirectory;
+        if (options.checkpointDirectory != null) {
+            Files.createDirectories(options.checkpointDirectory);
+            journal = Journal.open(options.checkpointDirectory.resolve("journal"), options.projectDirectory,
+                    options.checker, options.resume);
+            if (options.resume) {
+                out.println(journal.stats());
+            }
+            /* outputs in temporary directories would not survive the crash we want to resume from */
+            if (cacheDirectory == null) {
+                cacheDirectory = options.checkpointDirectory.resolve("outputs");
+            }
+        }
+        try {
+            run(src, lib, sources, cacheDirectory, previous, fileHashes, changedFiles, journal);
+        } finally {
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+
+    private void run(String src, String lib, SourceIndex sources, @Nullable Path cacheDirectory, @Nullable IncrementalState previous,
+                     Map<String, String> fileHashes, Set<String> changedFiles, @Nullable Journal journal)
+            throws IOException, InterruptedException {
+        var metrics = Metrics.shared();
+        var store = shared.store();
+        var cache = cacheDirectory == null
+                ? null
+                : SpeciminCache.open(cacheDirectory, shared.speciminPath(), src, lib);
+
+        if (options.logDirectory != null) {
+            Files.createDirectories(options.logDirectory);
+        }
+
+        @Nullable ProjectTypeSolver types = null;
+        if (options.resolveTypes) {
+            try (var span = metrics.span("type-solver")) {
+                types = ProjectTypeSolver.open(src, lib);
+            }
+        }
+
+        var warnings = new ArrayList<Warning>();
+        var warningTargets = new WarningTargets(src, types, sources, out);
+        /* targets whose earlier output is still valid are not minimized again */
+        var reused = new TreeMap<SpeciminTarget, IncrementalState.TargetRecord>();
+        /* what the journal already has, which is neither minimized nor read again */
+        var resumedOutputs = new TreeMap<SpeciminTarget, String>();
+        var resumedRecords = new TreeMap<SpeciminTarget, IncrementalState.TargetRecord>();
+        SortedMap<SpeciminTarget, String> staleOutDirs;
+        /* the targets minimized into each output directory, so a batch's output is divided between all of them */
+        var batches = new ConcurrentHashMap<String, List<SpeciminTarget>>();
+        BiConsumer<List<SpeciminTarget>, String> onMinimized = (batch, outputDirectory) -> {
+            batches.put(outputDirectory, batch);
+            if (journal != null) {
+                journal.output(batch, outputDirectory);
+            }
+        };
+        try (var pool = new SpeciminPool(jobs, shared.specimin(), cache, src, lib, options.retries, options.logDirectory,
+                store, options.batchMode, options.batchSize, out, onMinimized)) {
+            /* each warning's target is minimized as soon as the warning arrives, overlapping with the checker run */
+            var previousState = previous;
+            var changed = changedFiles;
+            WarningTargetsSink found = (warning, resolved) -> {
+                warnings.add(warning);
+                metrics.count("warnings");
+                for (var target : warningTargets.add(warning, resolved)) {
+                    metrics.count("targets");
+                    var resumedRecord = journal == null ? null : journal.record(target);
+                    var resumedOutput = journal == null ? null : journal.output(target);
+                    var record = previousState == null ? null : previousState.reusable(target, changed);
+                    if (resumedRecord != null) {
+                        metrics.count("targets.resumed");
+                        resumedRecords.put(target, resumedRecord);
+                    } else if (resumedOutput != null) {
+                        metrics.count("targets.resumed");
+                        resumedOutputs.put(target, resumedOutput);
+                        batches.put(resumedOutput, journal.batch(resumedOutput));
+                    } else if (record != null) {
+                        metrics.count("targets.reused");
+                        reused.put(target, record);
+                    } else {
+                        pool.submit(target);
+                    }
+                }
+            };
+            WarningSink sink = warning -> {
+                List<SpeciminTarget> resolved;
+                try (var span = metrics.span("resolve")) {
+                    resolved = warningTargets.resolve(warning);
+                }
+                if (journal != null) {
+                    journal.warning(warning, resolved);
+                }
+                found.accept(warning, resolved);
+            };
+
+            /* to check the warnings, we care about the lib directory; hence us not using src */
+            /* resolving warnings happens as they stream in, so it is part of the check phase's wall time too */
+            var checkerRunner = shared.checkerRunner();
+            try (var span = metrics.span("check")) {
+                if (journal != null && journal.checked()) {
+                    /* the warnings and their targets are in the journal, so neither the checker nor resolution runs */
+                    for (var resolved : journal.warnings()) {
+                        found.accept(resolved.warning(), resolved.targets());
+                    }
+                } else if (previous != null && previous.warningsReusable(options.checker, changedFiles)) {
+                    var recheck = previous.filesToRecheck(changedFiles, fileHashes, options.projectDirectory, sources);
+                    for (var warning : previous.warningsExcept(recheck, changedFiles, options.projectDirectory)) {
+                        sink.accept(warning);
+                    }
+                    if (!recheck.isEmpty()) {
+                        checkerRunner.run(options.checker, options.projectDirectory, new TreeSet<>(recheck), sink, out);
+                    }
+                    out.println("Rechecked files: " + recheck.size());
+                } else {
+                    checkerRunner.run(options.checker, options.projectDirectory, List.of(), sink, out);
+                }
+            }
+            if (journal != null && !journal.checked()) {
+                journal.checkerFinished();
+            }
+            out.println(warnings.size());
+
+            try (var span = metrics.span("await-specimin")) {
+                staleOutDirs = pool.awaitAll();
+            }
+            staleOutDirs.putAll(resumedOutputs);
+            /* failed targets are left out of the partitioning, and out of the incremental state, so the next run retries them */
+            var failures = pool.failures();
+            if (!failures.isEmpty()) {
+                out.println("Specimin failed on " + failures.size() + " targets:");
+                for (var failure : failures) {
+                    out.println(failure.target() + ": " + failure.error());
+                }
+            }
+            if (options.resultsFile != null) {
+                pool.writeResults(options.resultsFile);
+            }
+        }
+        if (previous != null) {
+            out.println("Reused Specimin outputs: " + reused.size() + ", stale: " + staleOutDirs.size());
+        }
+
+        var records = new TreeMap<SpeciminTarget, IncrementalState.TargetRecord>(reused);
+        records.putAll(resumedRecords);
+        for (var record : readOutputs(staleOutDirs, batches, store)) {
+            records.put(record.target(), record);
+            if (journal != null) {
+                journal.record(record);
+            }
+        }
+
+        if (options.stateFile != null) {
+            new IncrementalState(
+                    options.checker,
+                    fileHashes,
+                    IncrementalState.warningsByFile(warnings, options.projectDirectory),
+                    records).save(options.stateFile);
+        }
+
+        var fieldsAndMethodsForDirs = records
+                .values()
+                .stream()
+                .map(IncrementalState.TargetRecord::signatures)
+                .collect(Collectors.toSet())
+                .stream()
+                .toList();
+
+        /* check for overlap */
+        if (options.collisionMatrix) {
+            /* the number of declarations for each specimin output is the diagonal */
+            Partitioning.printCollisionMatrix(fieldsAndMethodsForDirs, out);
+        }
+        /* with several checkers, each checker's targets are also partitioned on their own */
+        if (Checkers.split(options.checker).size() > 1) {
+            for (var checkerTargets : warningTargets.byChecker().entrySet()) {
+                var checkerWarnings = warnings.stream().filter(w -> checkerTargets.getKey().equals(w.checker())).count();
+                var checkerSignatures = new HashSet<SignatureSet>();
+                for (var target : checkerTargets.getValue()) {
+                    var record = records.get(target);
+                    if (record != null)
+                        checkerSignatures.add(record.signatures());
+                }
+                out.println("Checker: " + checkerTargets.getKey());
+                out.println("Warnings: " + checkerWarnings);
+                try (var span = metrics.span("partition")) {
+                    printPartitioning(Partitioning.compute(List.copyOf(checkerSignatures)));
+                }
+            }
+            out.println("All checkers");
+        }
+        try (var span = metrics.span("partition")) {
+            printPartitioning(Partitioning.compute(fieldsAndMethodsForDirs));
+        }
+
+        if (cache != null) {
+            out.println(cache.stats());
+        }
+        if (journal != null) {
+            journal.finished();
+        }
+        out.flush();
+    }
+
+    /**
+     * Takes a warning with the targets it resolved to, whether just now or in the run being resumed.
+     */
+    private interface WarningTargetsSink {
+        void accept(Warning warning, List<SpeciminTarget> resolved) throws IOException;
+    }
+
+    /**
+     * Collects the declarations in each Specimin output, reading the outputs in parallel.
+     *
+     * @param batches the targets minimized into each output directory, including any whose declarations are
+     *                not being read
+     */
+    private static List<IncrementalState.TargetRecord> readOutputs(Map<SpeciminTarget, String> outputDirectories,
+                                                                   Map<String, List<SpeciminTarget>> batches,
+                                                                   OutputStore store) throws IOException {
+        var targetsByDirectory = new TreeMap<String, List<SpeciminTarget>>();
+        outputDirectories.forEach((target, outputDirectory) ->
+                targetsByDirectory.computeIfAbsent(outputDirectory, k -> new ArrayList<>()).add(target));
+        try {
+            return targetsByDirectory.entrySet().parallelStream().flatMap(entry -> {
+                var outputDirectory = entry.getKey();
+                /* a batch's output is divided between the whole batch, even if some of it was read before a crash */
+                var batch = batches.getOrDefault(outputDirectory, entry.getValue());
+                try (var span = Metrics.shared().span("signatures")) {
+                    var signatures = batch.size() == 1
+                            ? Map.of(batch.get(0), store.fieldsAndMethods(outputDirectory))
+                            : store.fieldsAndMethods(outputDirectory, batch);
+                    var records = new ArrayList<IncrementalState.TargetRecord>();
+                    for (var target : entry.getValue()) {
+                        records.add(new IncrementalState.TargetRecord(
+                                target,
+                                outputDirectory,
+                                IncrementalState.inputsOf(target, outputDirectory),
+                                signatures.getOrDefault(target, SignatureSet.EMPTY)));
+                    }
+                    return records.stream();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void printPartitioning(Partitioning.Result partitioning) {
+        out.println("Partition count");
+        out.println(partitioning.partitionCount());
+        out.println("Partition sizes");
+        for (var size : partitioning.partitionSizes()) {
+            out.println(size);
+        }
+
+        out.println("Conflict declarations: " + partitioning.conflictDeclarations());
+        out.println("Total declarations: " + partitioning.declarations());
+        out.println("Ratio: " + partitioning.conflictRatio());
+    }
+}
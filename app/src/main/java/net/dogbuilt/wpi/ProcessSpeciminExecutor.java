@@ -0,0 +1,177 @@
+/*
+ process handling is a modified copy of https://github.com/njit-jerse/ASHE_Automated-Software-Hardening-for-Entrypoints/blob/4b8db1add46c7ce0a8ea49309b7e5099fa4ff9cf/src/main/java/edu/njit/jerse/ashe/services/SpeciminTool.java,
+ and is under the appropriate license.
+ */
+
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs Specimin by starting a new JVM for every target.
+ *
+ * <p>This pays JVM startup for every target, but a Specimin crash, leak or hang only affects the
+ * target it happens on: a process that goes over its time or memory limit is killed, along with
+ * anything it started.
+ */
+final class ProcessSpeciminExecutor implements SpeciminExecutor {
+    private final Path javaPath;
+    private final Path speciminPath;
+    private final @Nullable String maxHeap;
+    private final SpeciminLimits limits;
+
+    /**
+     * @param javaPath     the java executable to run Specimin with
+     * @param speciminPath path to the Specimin project
+     * @param maxHeap      maximum heap size for each Specimin JVM, in -Xmx syntax, or null for the JVM's default
+     * @param limits       when to kill a Specimin process
+     */
+    ProcessSpeciminExecutor(Path javaPath, Path speciminPath, @Nullable String maxHeap, SpeciminLimits limits) {
+        this.javaPath = javaPath;
+        this.speciminPath = speciminPath;
+        this.maxHeap = maxHeap;
+        this.limits = limits;
+    }
+
+    @Override
+    public void execute(List<String> arguments, SpeciminLog log) throws IOException, InterruptedException {
+        List<String> commands = prepareCommands(javaPath, speciminPath, maxHeap, arguments);
+        startSpeciminProcess(commands, speciminPath, limits, log);
+    }
+
+    /**
+     * Prepares the commands to be executed by the Specimin tool.
+     *
+     * @param speciminPath   Path to the Specimin tool.
+     * @param maxHeap        Maximum heap size for the Specimin JVM, or null for the JVM's default.
+     * @param argsWithOption Formatted arguments string.
+     * @return List of commands for execution.
+     */
+    private static List<String> prepareCommands(Path javaPath, Path speciminPath, @Nullable String maxHeap, List<String> argsWithOption) {
+        List<String> commands = new ArrayList<>();
+        commands.add(javaPath.toString());
+        if (maxHeap != null) {
+            commands.add("-Xmx" + maxHeap);
+        }
+        commands.add("-jar");
+        commands.add(SpeciminTool.speciminJar(speciminPath).toString());
+        commands.addAll(argsWithOption);
+        return commands;
+    }
+
+
+    /**
+     * TODO: Specimin path should change to using a jar once we are ready
+     * Starts the Specimin process with the given commands and path to the Specimin project, and
+     * waits for it within the limits, killing it and its descendants if it goes over them.
+     *
+     * <p>The process writes its output straight to the log's file, or to a temporary file if the
+     * log has none, so nothing has to read it while it runs; once it exits, only the last lines
+     * are read back.
+     *
+     * @param commands     List of commands to be executed.
+     * @param speciminPath Path to the Specimin tool project.
+     *                     once we are ready
+     * @param limits       How long and with how much memory the process may run.
+     * @param log          Where the process's output is written.
+     * @throws IOException          If the process could not be run, went over a limit or did not exit successfully.
+     * @throws InterruptedException If the process execution is interrupted.
+     */
+    private static void startSpeciminProcess(List<String> commands, Path speciminPath, SpeciminLimits limits, SpeciminLog log)
+            throws IOException, InterruptedException {
+        log.append("Specimin output:" + System.lineSeparator());
+        var logFile = log.file();
+        Path output = logFile != null ? logFile : Files.createTempFile("specimin", ".log");
+        long outputStart = Files.size(output);
+
+        ProcessBuilder builder = new ProcessBuilder(commands);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(ProcessBuilder.Redirect.appendTo(output.toFile()));
+        builder.directory(new File(speciminPath.toString()));
+
+        Process process;
+        try {
+            process = builder.start();
+        } catch (IOException e) {
+            if (logFile == null) {
+                Files.deleteIfExists(output);
+            }
+            String errorMessage = "Failed to start the Specimin process";
+            throw new IOException(errorMessage, e);
+        }
+
+        try (var watch = Metrics.shared().watch("specimin", process)) {
+            waitWithinLimits(process, limits, watch);
+            finalizeProcess(process);
+        } finally {
+            destroyTree(process.toHandle());
+            log.rememberTailOf(output, outputStart);
+            if (logFile == null) {
+                Files.deleteIfExists(output);
+            }
+        }
+    }
+
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * Waits for the process to exit, or for it to go over a limit, in which case it is killed.
+     *
+     * @throws IOException if the process went over a limit
+     */
+    private static void waitWithinLimits(Process process, SpeciminLimits limits, Metrics.ChildWatch watch)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        while (!process.waitFor(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            /* also catches the peak of a run shorter than the sampling interval */
+            watch.sample();
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            if (limits.timeoutMillis() > 0 && elapsedMillis > limits.timeoutMillis()) {
+                destroyTree(process.toHandle());
+                Metrics.shared().count("specimin.timeouts");
+                throw new IOException("Specimin timed out after " + elapsedMillis + " ms");
+            }
+            if (limits.maxRssBytes() > 0 && watch.peakRssBytes() > limits.maxRssBytes()) {
+                destroyTree(process.toHandle());
+                Metrics.shared().count("specimin.memory-kills");
+                throw new IOException("Specimin used more than " + limits.maxRssBytes() / (1024 * 1024) + " MB");
+            }
+        }
+    }
+
+    /**
+     * Kills a process and everything it started.
+     */
+    static void destroyTree(ProcessHandle process) {
+        try (Stream<ProcessHandle> descendants = process.descendants()) {
+            descendants.forEach(ProcessHandle::destroyForcibly);
+        }
+        process.destroyForcibly();
+    }
+
+    /**
+     * Checks how the Specimin process exited, and closes its input.
+     *
+     * @param process The exited Specimin process.
+     * @throws IOException If the process exited unsuccessfully, or there's an error closing its input.
+     */
+    private static void finalizeProcess(Process process) throws IOException {
+        try {
+            int exitValue = process.exitValue();
+            if (exitValue != 0) {
+                throw new IOException("Specimin exited with code " + exitValue);
+            }
+        } finally {
+            process.getOutputStream().close();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package net.dogbuilt.wpi;
+
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JarTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Resolves the types in a project's sources with JavaParser's symbol solver, against the project's
+ * sources, the jars in its library directory and the JDK.
+ *
+ * <p>Building the solver indexes every jar, so there is one per project, shared by every thread
+ * resolving the project's warnings. The symbol solver is not thread safe, so types are resolved one
+ * at a time, but each type is only resolved once for the context it is written in: the type
+ * declaration around it and the type parameters of the methods and constructors it is in. Types in
+ * local and anonymous classes are resolved every time.
+ */
+final class ProjectTypeSolver {
+    private final JavaParserFacade facade;
+    /* context and type as written -> erasure */
+    private final ConcurrentHashMap<String, String> erasures = new ConcurrentHashMap<>();
+
+    private ProjectTypeSolver(CombinedTypeSolver solver) {
+        this.facade = JavaParserFacade.get(solver);
+    }
+
+    /**
+     * Builds the solver for a project, indexing the jars in its library directory; jars that cannot
+     * be read are left out.
+     *
+     * @param root      the source root of the project
+     * @param classPath the library directory of the project
+     */
+    static ProjectTypeSolver open(String root, String classPath) throws IOException {
+        var sources = new JavaParserTypeSolver(Path.of(root),
+                new ParserConfiguration().setLanguageLevel(CompilationUnitCache.LANGUAGE_LEVEL));
+        var solver = new CombinedTypeSolver(new ReflectionTypeSolver(true), sources);
+        var lib = Path.of(classPath);
+        if (Files.isDirectory(lib)) {
+            List<Path> jars;
+            try (Stream<Path> paths = Files.walk(lib)) {
+                jars = paths.filter(path -> path.toString().endsWith(".jar")).sorted().collect(Collectors.toList());
+            }
+            for (var jar : jars) {
+                try {
+                    solver.add(new JarTypeSolver(jar));
+                } catch (IOException | RuntimeException e) {
+                    Metrics.shared().count("type-solver.unreadable-jars");
+                }
+            }
+        }
+        return new ProjectTypeSolver(solver);
+    }
+
+    /**
+     * @return the erasure of the parameter's type, with any class names fully qualified, e.g.
+     * {@code java.util.List} for {@code List<String>}, and {@code ...} for a varargs parameter;
+     * or the type as written if it cannot be resolved
+     */
+    String erasure(Parameter parameter) {
+        var context = context(parameter);
+        String erasure;
+        if (context == null) {
+            erasure = resolve(parameter);
+        } else {
+            var key = context + parameter.getTypeAsString();
+            var known = erasures.get(key);
+            if (known != null) {
+                Metrics.shared().count("types.memoized");
+                erasure = known;
+            } else {
+                erasure = resolve(parameter);
+                erasures.putIfAbsent(key, erasure);
+            }
+        }
+        return erasure + (parameter.isVarArgs() ? "..." : "");
+    }
+
+    /**
+     * @return what the meaning of a type name written at the node depends on, or null if it is in
+     * a local or anonymous class, which has no name to memoize it under
+     */
+    private static @Nullable String context(Node node) {
+        var typeParameters = new StringBuilder();
+        for (Node ancestor = node.getParentNode().orElse(null);
+             ancestor != null;
+             ancestor = ancestor.getParentNode().orElse(null)) {
+            if (ancestor instanceof ObjectCreationExpr)
+                return null;
+            if (ancestor instanceof CallableDeclaration<?> callable)
+                typeParameters.append(callable.getTypeParameters()).append('\0');
+            if (ancestor instanceof TypeDeclaration<?> type) {
+                var name = type.getFullyQualifiedName();
+                return name.isEmpty() ? null : name.get() + "\0" + typeParameters;
+            }
+        }
+        return null;
+    }
+
+    private synchronized String resolve(Parameter parameter) {
+        try (var span = Metrics.shared().span("resolve-types")) {
+            return withoutTypeArguments(facade.convertToUsage(parameter.getType()).erasure().describe());
+        } catch (RuntimeException e) {
+            /* UnsolvedSymbolException, or a construct the solver does not support */
+            Metrics.shared().count("types.unresolved");
+            return parameter.getTypeAsString();
+        }
+    }
+
+    /* the solver does not erase the component type of an array, e.g. of T[] with T extends Comparable<T> */
+    private static String withoutTypeArguments(String type) {
+        var erased = new StringBuilder(type.length());
+        int depth = 0;
+        for (int i = 0; i < type.length(); i++) {
+            char c = type.charAt(i);
+            if (c == '<') {
+                depth++;
+            } else if (c == '>') {
+                depth--;
+            } else if (depth == 0) {
+                erased.append(c);
+            }
+        }
+        return erased.toString();
+    }
+}
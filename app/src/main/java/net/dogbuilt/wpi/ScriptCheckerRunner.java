@@ -0,0 +1,67 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Runs the checker with get-error-lines.sh, which forks the Checker Framework's javac and prints
+ * the file, line and message key of each error.
+ */
+final class ScriptCheckerRunner implements CheckerRunner {
+    private final Path getErrorLinesPath;
+
+    ScriptCheckerRunner(Path getErrorLinesPath) {
+        this.getErrorLinesPath = getErrorLinesPath;
+    }
+
+    @Override
+    public void run(String checker, String projectDirectory, Collection<String> files, WarningSink sink, PrintStream out)
+            throws IOException, InterruptedException {
+        var errorLines = new ArrayList<String>(List.of(getErrorLinesPath.toString(), checker, projectDirectory));
+        for (var file : files) {
+            errorLines.add(projectDirectory + "/" + file);
+        }
+        ProcessBuilder errorLinesPB = new ProcessBuilder(errorLines);
+
+        var checkers = Checkers.split(checker);
+        Process process = errorLinesPB.start();
+
+        try (var watch = Metrics.shared().watch("check", process);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                @Nullable Warning warning;
+                try (var span = Metrics.shared().span("parse-warnings")) {
+                    warning = parseLine(line, checkers);
+                }
+                if (warning != null) {
+                    sink.accept(warning);
+                }
+            }
+        }
+
+        int exitCode = process.waitFor();
+        out.println("Exited with code: " + exitCode);
+    }
+
+    /**
+     * @param line     a line of get-error-lines.sh's output: file, line and optionally message key, separated by tabs
+     * @param checkers the checkers that were run
+     * @return the warning on the line, or null if the line is not one
+     */
+    static @Nullable Warning parseLine(String line, List<String> checkers) {
+        var sections = line.split("\t");
+        if (sections.length != 2 && sections.length != 3)
+            return null;
+        var key = sections.length == 3 ? sections[2] : null;
+        return new Warning(sections[0], Integer.parseInt(sections[1]), Checkers.reporting(checkers, key));
+    }
+}
@@ -0,0 +1,166 @@
+package net.dogbuilt.wpi;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Splits the files to check into shards of whole packages and runs another runner on each shard in
+ * parallel.
+ *
+ * <p>Each shard is still compiled with the whole source tree on the sourcepath, so references into
+ * other shards resolve; they are just not checked in that shard. Warnings from all shards are
+ * merged, with duplicates dropped, into one sink, which is only called by one shard at a time.
+ *
+ * <p>Optionally, after the sharded run, the files are checked again in a single run, and the time
+ * taken and any warnings only one of the runs reported are printed. With the in-process runner the
+ * single run benefits from the JIT warming up during the sharded run, which understates the speedup.
+ */
+final class ShardedCheckerRunner implements CheckerRunner {
+    private final CheckerRunner shardRunner;
+    private final int shards;
+    private final boolean compare;
+
+    /**
+     * @param shardRunner runs the checker on each shard, and on everything for the comparison
+     * @param shards      the maximum number of shards, which are all run at once
+     * @param compare     whether to also run the checker unsharded and report the differences
+     */
+    ShardedCheckerRunner(CheckerRunner shardRunner, int shards, boolean compare) {
+        this.shardRunner = shardRunner;
+        this.shards = shards;
+        this.compare = compare;
+    }
+
+    @Override
+    public void run(String checker, String projectDirectory, Collection<String> files, WarningSink sink, PrintStream out)
+            throws IOException, InterruptedException {
+        var toCheck = files.isEmpty() ? sourceFiles(projectDirectory) : new TreeSet<>(files);
+        var partitioned = shard(toCheck, shards);
+        out.println("Checker shards: " + partitioned.size());
+
+        var seen = new HashSet<Warning>();
+        WarningSink merged = warning -> {
+            synchronized (seen) {
+                if (seen.add(warning)) {
+                    sink.accept(warning);
+                }
+            }
+        };
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, partitioned.size()));
+        try {
+            var futures = new ArrayList<Future<Void>>();
+            for (var shard : partitioned) {
+                futures.add(executor.submit(() -> {
+                    shardRunner.run(checker, projectDirectory, shard, merged, out);
+                    return null;
+                }));
+            }
+            for (var future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException cause)
+                        throw cause;
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long shardedNanos = System.nanoTime() - start;
+
+        if (compare) {
+            compareWithSingleRun(checker, projectDirectory, toCheck, seen, shardedNanos, out);
+        }
+    }
+
+    private void compareWithSingleRun(String checker, String projectDirectory, Set<String> files,
+                                      Set<Warning> shardedWarnings, long shardedNanos, PrintStream out)
+            throws IOException, InterruptedException {
+        var single = new HashSet<Warning>();
+        long start = System.nanoTime();
+        shardRunner.run(checker, projectDirectory, files, single::add, out);
+        long singleNanos = System.nanoTime() - start;
+
+        out.println("Sharded checker run: " + shardedNanos / 1_000_000 + " ms, single run: "
+                + singleNanos / 1_000_000 + " ms, speedup: " + (float) singleNanos / shardedNanos);
+
+        var onlySharded = new TreeSet<String>();
+        for (var warning : shardedWarnings) {
+            if (!single.contains(warning))
+                onlySharded.add(warning.file() + ":" + warning.line());
+        }
+        var onlySingle = new TreeSet<String>();
+        for (var warning : single) {
+            if (!shardedWarnings.contains(warning))
+                onlySingle.add(warning.file() + ":" + warning.line());
+        }
+        out.println("Warnings only in the sharded run: " + onlySharded.size());
+        onlySharded.forEach(out::println);
+        out.println("Warnings only in the single run: " + onlySingle.size());
+        onlySingle.forEach(out::println);
+    }
+
+    /**
+     * @return every source file in the project, relative to the project directory
+     */
+    private static Set<String> sourceFiles(String projectDirectory) throws IOException {
+        var project = Path.of(projectDirectory);
+        var files = new TreeSet<String>();
+        try (Stream<Path> paths = Files.walk(project.resolve("src"))) {
+            paths.filter(Files::isRegularFile)
+                    .filter(path -> path.toString().endsWith(".java"))
+                    .forEach(path -> files.add(project.relativize(path).toString()));
+        }
+        return files;
+    }
+
+    /**
+     * Groups files by package, i.e. directory, and deals the packages out to at most {@code count}
+     * shards, largest package first, each to the shard with the fewest files so far.
+     */
+    static List<List<String>> shard(Collection<String> files, int count) {
+        Map<String, List<String>> packages = new TreeMap<>();
+        for (var file : files) {
+            int slash = file.lastIndexOf('/');
+            var directory = slash < 0 ? "" : file.substring(0, slash);
+            packages.computeIfAbsent(directory, k -> new ArrayList<>()).add(file);
+        }
+
+        var bySize = new ArrayList<List<String>>(packages.values());
+        bySize.sort(Comparator.comparingInt((List<String> p) -> p.size()).reversed());
+
+        var shards = new ArrayList<List<String>>();
+        for (var pkg : bySize) {
+            if (shards.size() < count) {
+                shards.add(new ArrayList<>(pkg));
+                continue;
+            }
+            var smallest = shards.get(0);
+            for (var shard : shards) {
+                if (shard.size() < smallest.size())
+                    smallest = shard;
+            }
+            smallest.addAll(pkg);
+        }
+        return shards;
+    }
+}
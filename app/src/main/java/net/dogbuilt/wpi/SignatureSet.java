@@ -0,0 +1,128 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable set of signatures, stored as the sorted array of their {@link SignatureTable} IDs.
+ *
+ * <p>Two sets are equal if they contain the same signatures.
+ */
+final class SignatureSet {
+    static final SignatureSet EMPTY = new SignatureSet(new int[0]);
+
+    private final int[] ids;
+    private final int hash;
+
+    private SignatureSet(int[] sortedIds) {
+        this.ids = sortedIds;
+        this.hash = Arrays.hashCode(sortedIds);
+    }
+
+    static SignatureSet of(Collection<String> signatures, SignatureTable table) {
+        var ids = new int[signatures.size()];
+        int i = 0;
+        for (var signature : signatures) {
+            ids[i++] = table.intern(signature);
+        }
+        /* the collection may have been a list with duplicates */
+        return ofUnsorted(ids);
+    }
+
+    /**
+     * @return the set of signatures in any of the sets
+     */
+    static SignatureSet union(Collection<SignatureSet> sets) {
+        if (sets.size() == 1)
+            return sets.iterator().next();
+        int total = 0;
+        for (var set : sets) {
+            total += set.ids.length;
+        }
+        var ids = new int[total];
+        int i = 0;
+        for (var set : sets) {
+            System.arraycopy(set.ids, 0, ids, i, set.ids.length);
+            i += set.ids.length;
+        }
+        return ofUnsorted(ids);
+    }
+
+    /**
+     * @param ids IDs in any order, possibly repeated; the array is reused
+     */
+    private static SignatureSet ofUnsorted(int[] ids) {
+        Arrays.sort(ids);
+        int distinct = 0;
+        for (int j = 0; j < ids.length; j++) {
+            if (j == 0 || ids[j] != ids[j - 1]) {
+                ids[distinct++] = ids[j];
+            }
+        }
+        return new SignatureSet(distinct == ids.length ? ids : Arrays.copyOf(ids, distinct));
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return the i-th smallest ID in the set
+     */
+    int id(int i) {
+        return ids[i];
+    }
+
+    /**
+     * @return one more than the largest ID in the set, or 0 if it is empty
+     */
+    int idBound() {
+        return ids.length == 0 ? 0 : ids[ids.length - 1] + 1;
+    }
+
+    /**
+     * @return the number of signatures in both sets, by merging the two sorted arrays
+     */
+    int intersectionSize(SignatureSet other) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < ids.length && j < other.ids.length) {
+            if (ids[i] < other.ids[j]) {
+                i++;
+            } else if (ids[i] > other.ids[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the signatures in the set, in ID order
+     */
+    List<String> signatures(SignatureTable table) {
+        var signatures = new ArrayList<String>(ids.length);
+        for (int id : ids) {
+            signatures.add(table.signature(id));
+        }
+        return signatures;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object other) {
+        return other instanceof SignatureSet set && hash == set.hash && Arrays.equals(ids, set.ids);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,60 @@
+package net.dogbuilt.wpi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns field and method signatures, such as {@code pkg.Class#method(T1, T2)}, to small integer
+ * IDs, so each signature string is stored once however many Specimin outputs contain it, and
+ * outputs can be compared as arrays of ints.
+ *
+ * <p>IDs are dense, starting from 0, and only mean something within one JVM; anything persisted
+ * should use the signatures themselves.
+ */
+final class SignatureTable {
+    private static final SignatureTable SHARED = new SignatureTable();
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    /* guarded by this */
+    private final List<String> signatures = new ArrayList<>();
+
+    /**
+     * @return the table shared by everything in this JVM.
+     */
+    static SignatureTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return the ID for the signature, assigning it a new one if it has not been seen before
+     */
+    int intern(String signature) {
+        var id = ids.get(signature);
+        if (id != null)
+            return id;
+        synchronized (this) {
+            id = ids.get(signature);
+            if (id != null)
+                return id;
+            int newId = signatures.size();
+            signatures.add(signature);
+            ids.put(signature, newId);
+            return newId;
+        }
+    }
+
+    /**
+     * @return the signature with the given ID
+     */
+    synchronized String signature(int id) {
+        return signatures.get(id);
+    }
+
+    /**
+     * @return the number of signatures interned so far; every ID is less than this
+     */
+    synchronized int size() {
+        return signatures.size();
+    }
+}
@@ -0,0 +1,424 @@
+package net.dogbuilt.wpi;
+
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.nodeTypes.NodeWithExtends;
+import com.github.javaparser.ast.nodeTypes.NodeWithImplements;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An index of every source file of a project, built once at the start of a run: each file's content
+ * hash, package and top-level types, and the Specimin targets each of its lines falls in.
+ *
+ * <p>Files are read through memory maps and parsed in parallel. Resolving a warning is then a binary
+ * search over the line ranges of its file rather than a parse, and {@link IncrementalState} takes
+ * the hashes from here instead of reading the sources again. Saved to a file, the index is reused by
+ * the next run: a file with the same size and modification time is not read at all, and a file with
+ * the same contents is not parsed again.
+ *
+ * <p>The line ranges come from the {@link DeclarationIndex}: every line in one of its runs has the
+ * same innermost declaration, and so the same outermost method and field, which are what
+ * {@link WarningTargets} turns into targets. Adjacent ranges with the same targets are merged.
+ *
+ * <p>{@link IncrementalState} also finds the types each changed file declares, and their packages,
+ * here rather than by parsing the file.
+ *
+ * <p>The file is line oriented, with tab separated fields, like {@link IncrementalState}'s; {@code F}
+ * lines are followed by the {@code T} (type) and {@code L} (line range) lines that belong to them:
+ *
+ * <pre>
+ * wpi-source-index 2
+ * F path size last-modified hash package
+ * T type supertype...
+ * L first-line class method field
+ * </pre>
+ *
+ * <p>Paths are relative to {@code src}. The package is empty for the default package, and {@code -}
+ * for a file that does not parse, which has no other lines. A range extends up to the next one's
+ * first line; its class, method and field are {@code -} if there are none. The method is its name and
+ * parameter types as written, and the field is each of its variables as {@code name:line:column},
+ * separated by commas.
+ */
+final class SourceIndex {
+    private static final String HEADER = "wpi-source-index 2";
+    private static final String NONE = "-";
+
+    /**
+     * A variable of a field declaration, and where it starts.
+     */
+    record Variable(String name, int line, int column) {
+    }
+
+    /**
+     * What a range of lines falls in.
+     *
+     * @param className the fully qualified name of the class of the method or field, or null if it has none
+     * @param method    the name and parameter types of the outermost method, or null if there is none
+     * @param field     the variables of the outermost field declaration, or empty if there is none
+     */
+    record Lines(@Nullable String className, @Nullable String method, List<Variable> field) {
+        static final Lines OUTSIDE = new Lines(null, null, List.of());
+    }
+
+    /**
+     * A type declared in a file.
+     *
+     * @param name       the type's name within the file, with the types it is nested in, e.g. {@code Outer.Inner}
+     * @param supertypes the simple names of the types it directly extends or implements
+     */
+    record Type(String name, List<String> supertypes) {
+        String simpleName() {
+            return name.substring(name.lastIndexOf('.') + 1);
+        }
+    }
+
+    /**
+     * The declarations in a file that parses.
+     *
+     * @param packageName the file's package, or empty for the default package
+     * @param types       every type the file declares, outer types first
+     * @param starts      the first line of each range, ascending
+     * @param lines       what each range falls in
+     */
+    record Declarations(String packageName, List<Type> types, int[] starts, List<Lines> lines) {
+        /**
+         * @return what the line falls in
+         */
+        Lines at(int line) {
+            int range = Arrays.binarySearch(starts, line);
+            if (range < 0) {
+                /* not the start of a range, so it is in the range before the insertion point */
+                range = -range - 2;
+            }
+            return range < 0 ? Lines.OUTSIDE : lines.get(range);
+        }
+    }
+
+    /**
+     * @param hash         the hex encoded hash of the file's contents
+     * @param declarations what the file declares, or null if it does not parse
+     */
+    record Entry(long size, long lastModified, String hash, @Nullable Declarations declarations) {
+    }
+
+    /* path relative to src -> entry */
+    private final SortedMap<String, Entry> entries;
+    /* the files whose contents this index read, rather than trusting an earlier index */
+    private final Set<String> read;
+    private final int parsed;
+
+    private SourceIndex(SortedMap<String, Entry> entries, Set<String> read, int parsed) {
+        this.entries = entries;
+        this.read = read;
+        this.parsed = parsed;
+    }
+
+    /**
+     * Indexes every source file under a source root, reusing what an earlier index has for files
+     * that have not changed.
+     *
+     * @param root     the source root, e.g. {@code project/src}
+     * @param previous the index from an earlier run, or null
+     */
+    static SourceIndex build(Path root, @Nullable SourceIndex previous) throws IOException {
+        if (!Files.isDirectory(root))
+            return new SourceIndex(new TreeMap<>(), Set.of(), 0);
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(root)) {
+            files = paths.filter(path -> path.toString().endsWith(".java"))
+                    .filter(Files::isRegularFile)
+                    .collect(Collectors.toList());
+        }
+
+        var read = ConcurrentHashMap.<String>newKeySet();
+        var parsed = new AtomicInteger();
+        try {
+            var entries = files.parallelStream().collect(Collectors.toMap(
+                    file -> root.relativize(file).toString(),
+                    file -> {
+                        var path = root.relativize(file).toString();
+                        var known = previous == null ? null : previous.entries.get(path);
+                        try {
+                            var entry = entry(file, known, parsed);
+                            if (entry != known)
+                                read.add(path);
+                            return entry;
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    },
+                    (a, b) -> a,
+                    TreeMap::new));
+            Metrics.shared().count("source-index.files", entries.size());
+            return new SourceIndex(entries, Set.copyOf(read), parsed.get());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return the file's entry, which is {@code known} itself only if the file was not read
+     */
+    private static Entry entry(Path file, @Nullable Entry known, AtomicInteger parsed)
+            throws IOException {
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (known != null && known.size() == size && known.lastModified() == lastModified)
+                return known;
+
+            var contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            var digest = Hashes.newDigest();
+            digest.update(contents.duplicate());
+            var hash = Hashes.hex(digest);
+            if (known != null && known.hash().equals(hash))
+                return new Entry(size, lastModified, hash, known.declarations());
+
+            parsed.incrementAndGet();
+            try (var span = Metrics.shared().span("index-parse")) {
+                return new Entry(size, lastModified, hash, declarations(file, StandardCharsets.UTF_8.decode(contents).toString()));
+            }
+        }
+    }
+
+    private static @Nullable Declarations declarations(Path file, String source) {
+        DeclarationIndex index;
+        try {
+            index = DeclarationIndex.of(CompilationUnitCache.parse(source));
+        } catch (ParseProblemException e) {
+            /* resolving a warning in this file parses it again, and reports the problem then */
+            Metrics.shared().count("source-index.unparsable");
+            return null;
+        }
+        var compilationUnit = index.compilationUnit();
+        var packageName = compilationUnit.getPackageDeclaration().map(p -> p.getNameAsString()).orElse("");
+        var types = new ArrayList<Type>();
+        for (TypeDeclaration<?> type : compilationUnit.findAll(TypeDeclaration.class)) {
+            types.add(new Type(nameInFile(type), supertypes(type)));
+        }
+
+        var starts = new ArrayList<Integer>();
+        var lines = new ArrayList<Lines>();
+        for (int start : index.runStarts()) {
+            var range = lines(new Warning(file.toString(), start), index, WarningTargets::parameterTypesAsWritten);
+            if (lines.isEmpty() || !lines.get(lines.size() - 1).equals(range)) {
+                starts.add(start);
+                lines.add(range);
+            }
+        }
+        return new Declarations(packageName, List.copyOf(types), starts.stream().mapToInt(Integer::intValue).toArray(), List.copyOf(lines));
+    }
+
+    private static String nameInFile(TypeDeclaration<?> type) {
+        var name = new StringBuilder(type.getNameAsString());
+        for (var outer = type.getParentNode().orElse(null); outer != null; outer = outer.getParentNode().orElse(null)) {
+            if (outer instanceof TypeDeclaration<?> enclosing)
+                name.insert(0, enclosing.getNameAsString() + ".");
+        }
+        return name.toString();
+    }
+
+    /**
+     * @return the simple names of the types the type directly extends or implements
+     */
+    static List<String> supertypes(TypeDeclaration<?> type) {
+        var supertypes = new ArrayList<String>();
+        if (type instanceof NodeWithExtends<?> extending) {
+            extending.getExtendedTypes().forEach(supertype -> supertypes.add(supertype.getNameAsString()));
+        }
+        if (type instanceof NodeWithImplements<?> implementing) {
+            implementing.getImplementedTypes().forEach(supertype -> supertypes.add(supertype.getNameAsString()));
+        }
+        return supertypes;
+    }
+
+    /**
+     * @param index          the declaration index for the warning's file
+     * @param parameterTypes names the parameter types of a method
+     * @return what the warning's line falls in
+     */
+    static Lines lines(Warning warning, DeclarationIndex index, Function<MethodDeclaration, String> parameterTypes) {
+        var method = warning.getEnclosingMethod(index);
+        var field = warning.getEnclosingField(index);
+        if (method == null && field == null)
+            return Lines.OUTSIDE;
+        return new Lines(
+                warning.getFullyQualifiedClassName(index),
+                method == null ? null : method.getName() + "(" + parameterTypes.apply(method) + ")",
+                field == null ? List.of() : variables(field));
+    }
+
+    private static List<Variable> variables(FieldDeclaration field) {
+        var variables = new ArrayList<Variable>();
+        for (var variable : field.getVariables()) {
+            var begin = variable.getBegin().orElse(null);
+            /* a variable without a position is never the one a column points at */
+            variables.add(begin == null
+                    ? new Variable(variable.getNameAsString(), Integer.MAX_VALUE, Integer.MAX_VALUE)
+                    : new Variable(variable.getNameAsString(), begin.line, begin.column));
+        }
+        return variables;
+    }
+
+    /**
+     * @param file a path relative to the source root
+     * @return the file's declarations, or null if it is not in the index or does not parse
+     */
+    @Nullable Declarations declarations(String file) {
+        var entry = entries.get(file);
+        return entry == null ? null : entry.declarations();
+    }
+
+    /**
+     * @param file a path relative to the source root
+     * @return the hash of the file's contents, or null if it is not in the index or this index did not read it
+     * because its size and modification time were unchanged, which an edit can keep
+     */
+    @Nullable String hash(String file) {
+        var entry = entries.get(file);
+        return entry == null || !read.contains(file) ? null : entry.hash();
+    }
+
+    /**
+     * @return a one line summary of how much of the index was built from scratch, suitable for printing
+     */
+    String stats() {
+        return "Source index: " + entries.size() + " files, " + read.size() + " read, " + parsed + " parsed";
+    }
+
+    /**
+     * @return the index saved in the file, or null if there is no usable index there
+     */
+    static @Nullable SourceIndex load(Path file) throws IOException {
+        if (!Files.isRegularFile(file))
+            return null;
+
+        var entries = new TreeMap<String, Entry>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine()))
+                return null;
+            /* the F line being read, whose types and ranges are collected until the next one */
+            String @Nullable [] header = null;
+            var types = new ArrayList<Type>();
+            var starts = new ArrayList<Integer>();
+            var lines = new ArrayList<Lines>();
+            String line;
+            while (true) {
+                line = reader.readLine();
+                var fields = line == null ? null : line.split("\t", -1);
+                if ((fields == null || fields[0].equals("F")) && header != null) {
+                    var declarations = header[5].equals(NONE) ? null : new Declarations(header[5], List.copyOf(types),
+                            starts.stream().mapToInt(Integer::intValue).toArray(), List.copyOf(lines));
+                    entries.put(header[1], new Entry(Long.parseLong(header[2]), Long.parseLong(header[3]), header[4], declarations));
+                    types.clear();
+                    starts.clear();
+                    lines.clear();
+                }
+                if (fields == null)
+                    break;
+                switch (fields[0]) {
+                    case "F" -> header = fields;
+                    case "T" -> types.add(new Type(fields[1], List.of(fields).subList(2, fields.length)));
+                    case "L" -> {
+                        starts.add(Integer.parseInt(fields[1]));
+                        lines.add(new Lines(orNull(fields[2]), orNull(fields[3]), parseVariables(fields[4])));
+                    }
+                    default -> {
+                        /* written by a newer version; ignore what we do not understand */
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            /* a corrupt index just means we index everything again */
+            return null;
+        }
+        return new SourceIndex(entries, Set.of(), 0);
+    }
+
+    /**
+     * Writes the index to a file, replacing it atomically.
+     */
+    void save(Path file) throws IOException {
+        var absolute = file.toAbsolutePath();
+        var temporary = Files.createTempFile(absolute.getParent(), "wpi-source-index", ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (var indexed : entries.entrySet()) {
+                var entry = indexed.getValue();
+                var declarations = entry.declarations();
+                writeLine(writer, "F", indexed.getKey(), Long.toString(entry.size()), Long.toString(entry.lastModified()),
+                        entry.hash(), declarations == null ? NONE : declarations.packageName());
+                if (declarations == null)
+                    continue;
+                for (var type : declarations.types()) {
+                    var fields = new ArrayList<>(List.of("T", type.name()));
+                    fields.addAll(type.supertypes());
+                    writeLine(writer, fields.toArray(String[]::new));
+                }
+                for (int i = 0; i < declarations.starts().length; i++) {
+                    var range = declarations.lines().get(i);
+                    writeLine(writer, "L", Integer.toString(declarations.starts()[i]), orNone(range.className()),
+                            orNone(range.method()), formatVariables(range.field()));
+                }
+            }
+        }
+        Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String formatVariables(List<Variable> variables) {
+        if (variables.isEmpty())
+            return NONE;
+        return variables.stream()
+                .map(variable -> variable.name() + ":" + variable.line() + ":" + variable.column())
+                .collect(Collectors.joining(","));
+    }
+
+    private static List<Variable> parseVariables(String field) {
+        if (field.equals(NONE))
+            return List.of();
+        var variables = new ArrayList<Variable>();
+        for (var variable : field.split(",")) {
+            var parts = variable.split(":");
+            variables.add(new Variable(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2])));
+        }
+        return List.copyOf(variables);
+    }
+
+    private static String orNone(@Nullable String value) {
+        return value == null ? NONE : value;
+    }
+
+    private static @Nullable String orNull(String value) {
+        return value.equals(NONE) ? null : value;
+    }
+
+    private static void writeLine(BufferedWriter writer, String... fields) throws IOException {
+        writer.write(String.join("\t", fields));
+        writer.newLine();
+    }
+}
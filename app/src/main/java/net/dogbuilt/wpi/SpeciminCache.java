@@ -0,0 +1,175 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A persistent, content-addressed cache of Specimin's output directories.
+ *
+ * <p>An entry's key is a hash of everything that can change Specimin's output for a target: the
+ * target itself, the contents of the file it is in, the contents of every source file under the
+ * root (we do not know which of them Specimin looks at), every file in the library directory and
+ * specimin.jar. The checker is deliberately not part of the key, so runs that only differ in the
+ * checker share entries.
+ *
+ * <p>Specimin writes into a staging directory inside the cache, which is renamed to its key once
+ * Specimin succeeds, so a crashed run never leaves behind a partial entry.
+ */
+final class SpeciminCache {
+    /* bump this whenever the key or the layout of an entry changes */
+    private static final String VERSION = "1";
+
+    private final Path directory;
+    /* the hash of the inputs that are the same for every target */
+    private final String sharedInputsHash;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private SpeciminCache(Path directory, String sharedInputsHash) {
+        this.directory = directory;
+        this.sharedInputsHash = sharedInputsHash;
+    }
+
+    /**
+     * Opens (creating, if needed) a cache for one project.
+     *
+     * @param directory    where cache entries are stored; may be shared between projects and runs
+     * @param speciminPath path to the Specimin project
+     * @param root         the source root of the project
+     * @param classPath    the library directory of the project
+     * @throws IOException if the cache directory cannot be created or the inputs cannot be read
+     */
+    static SpeciminCache open(Path directory, Path speciminPath, String root, String classPath) throws IOException {
+        Files.createDirectories(directory);
+
+        var digest = Hashes.newDigest();
+        Hashes.update(digest, VERSION);
+        Hashes.update(digest, Hashes.ofFile(SpeciminTool.speciminJar(speciminPath)));
+        for (var file : filesUnder(Path.of(classPath), "")) {
+            Hashes.update(digest, file.toString());
+            Hashes.update(digest, Hashes.ofFile(Path.of(classPath).resolve(file)));
+        }
+        for (var file : filesUnder(Path.of(root), ".java")) {
+            Hashes.update(digest, file.toString());
+            Hashes.update(digest, Hashes.ofFile(Path.of(root).resolve(file)));
+        }
+        return new SpeciminCache(directory, Hashes.hex(digest));
+    }
+
+    /**
+     * @return the paths, relative to {@code directory}, of the regular files under it whose name ends in {@code suffix}, in a fixed order
+     */
+    private static List<Path> filesUnder(Path directory, String suffix) throws IOException {
+        if (!Files.isDirectory(directory))
+            return List.of();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths
+                    .filter(Files::isRegularFile)
+                    .filter(path -> path.toString().endsWith(suffix))
+                    .map(directory::relativize)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return the key for a target in this project
+     * @throws IOException if the target's file cannot be read
+     */
+    String key(String root, String targetFile, String target, SpeciminTool.SpeciminTargetType type) throws IOException {
+        var digest = Hashes.newDigest();
+        Hashes.update(digest, sharedInputsHash);
+        Hashes.update(digest, targetFile);
+        Hashes.update(digest, Hashes.ofFile(Path.of(root).resolve(targetFile)));
+        Hashes.update(digest, type.name());
+        Hashes.update(digest, target);
+        return Hashes.hex(digest);
+    }
+
+    /**
+     * @return the key for a batch of targets minimized together; a batch of one has the same key as its target alone
+     * @throws IOException if a target's file cannot be read
+     */
+    String key(String root, List<SpeciminTarget> targets) throws IOException {
+        if (targets.size() == 1) {
+            var target = targets.get(0);
+            return key(root, target.targetFile(), target.speciminSignature(), target.type());
+        }
+        var digest = Hashes.newDigest();
+        Hashes.update(digest, sharedInputsHash);
+        Hashes.update(digest, "batch");
+        for (var target : targets) {
+            Hashes.update(digest, key(root, target.targetFile(), target.speciminSignature(), target.type()));
+        }
+        return Hashes.hex(digest);
+    }
+
+    /**
+     * @return the cached output directory for the key, or null if there is none
+     */
+    @Nullable String lookup(String key) {
+        var entry = directory.resolve(key);
+        if (Files.isDirectory(entry)) {
+            hits.incrementAndGet();
+            return entry.toString();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * @return a new, empty directory for Specimin to write its output to, to be passed to {@link #store} or {@link #discard}
+     */
+    Path newStagingDirectory() throws IOException {
+        return Files.createTempDirectory(directory, "staging-");
+    }
+
+    /**
+     * Turns a staging directory into the entry for a key.
+     *
+     * @return the entry's directory
+     */
+    String store(String key, Path staging) throws IOException {
+        var entry = directory.resolve(key);
+        try {
+            Files.move(staging, entry, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            /* someone else minimized the same target first; theirs is as good as ours */
+            discard(staging);
+        } catch (IOException e) {
+            /* ATOMIC_MOVE reports an existing non-empty target differently on some platforms */
+            if (!Files.isDirectory(entry))
+                throw e;
+            discard(staging);
+        }
+        return entry.toString();
+    }
+
+    /**
+     * Deletes a staging directory whose Specimin run failed.
+     */
+    void discard(Path staging) throws IOException {
+        if (!Files.exists(staging))
+            return;
+        try (Stream<Path> paths = Files.walk(staging)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    String stats() {
+        return "Specimin cache: " + hits.get() + " hits, " + misses.get() + " misses";
+    }
+}
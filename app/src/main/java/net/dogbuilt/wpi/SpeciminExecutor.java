@@ -0,0 +1,29 @@
+package net.dogbuilt.wpi;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Runs Specimin with a given set of command line arguments.
+ *
+ * <p>Implementations must be safe to call from several threads at once, since {@link SpeciminPool}
+ * shares one executor between all of its workers.
+ */
+interface SpeciminExecutor extends AutoCloseable {
+    /**
+     * Runs Specimin to completion.
+     *
+     * @param arguments Specimin's command line arguments, as formatted by {@link SpeciminTool}
+     * @param log       where Specimin's output is written as it arrives; it is filled in even if Specimin fails
+     * @throws IOException          if Specimin could not be run or did not succeed
+     * @throws InterruptedException if interrupted while waiting for Specimin
+     */
+    void execute(List<String> arguments, SpeciminLog log) throws IOException, InterruptedException;
+
+    /**
+     * Releases anything the executor keeps alive between targets.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,11 @@
+package net.dogbuilt.wpi;
+
+/**
+ * How long, and with how much memory, Specimin may run on one target before it is killed.
+ *
+ * @param timeoutMillis the wall-clock limit for one target, or 0 for none
+ * @param maxRssBytes   the limit on the resident memory of a Specimin process and its descendants, or 0 for none
+ */
+record SpeciminLimits(long timeoutMillis, long maxRssBytes) {
+    static final SpeciminLimits NONE = new SpeciminLimits(0, 0);
+}
@@ -0,0 +1,135 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+/**
+ * Where Specimin's output for one target goes: optionally a file, which is written as the output
+ * arrives, and the last {@value #TAIL_LINES} lines, which are kept in memory to report a failure with.
+ *
+ * <p>However much Specimin prints, a log only holds a bounded amount of it in memory. A log may be
+ * written to from several threads; each call appends whole lines.
+ */
+final class SpeciminLog {
+    static final int TAIL_LINES = 50;
+    /* how much of the end of a process's output is read to find its last lines */
+    private static final int TAIL_BYTES = 16 * 1024;
+
+    private final @Nullable Path file;
+    /* guarded by this */
+    private final ArrayDeque<String> tail = new ArrayDeque<>();
+
+    private SpeciminLog(@Nullable Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @return a log that is written to {@code file}, replacing anything already there
+     */
+    static SpeciminLog toFile(Path file) throws IOException {
+        Files.writeString(file, "", StandardCharsets.UTF_8);
+        return new SpeciminLog(file);
+    }
+
+    /**
+     * @return a log that only keeps the last lines
+     */
+    static SpeciminLog inMemory() {
+        return new SpeciminLog(null);
+    }
+
+    /**
+     * @return the file the whole log is written to, or null if only the last lines are kept
+     */
+    @Nullable Path file() {
+        return file;
+    }
+
+    synchronized void append(String text) throws IOException {
+        if (file != null) {
+            Files.writeString(file, text, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+        remember(text);
+    }
+
+    /**
+     * Takes note of the last lines a process wrote to a file, from {@code from} bytes in, without
+     * reading the rest; the file is expected to be this log's own file, or a temporary one.
+     */
+    synchronized void rememberTailOf(Path output, long from) throws IOException {
+        try (var reader = new RandomAccessFile(output.toFile(), "r")) {
+            long start = Math.max(from, reader.length() - TAIL_BYTES);
+            var bytes = new byte[(int) (reader.length() - start)];
+            reader.seek(start);
+            reader.readFully(bytes);
+            var text = new String(bytes, StandardCharsets.UTF_8);
+            if (start > from) {
+                /* the first line is probably cut off */
+                text = text.substring(text.indexOf('\n') + 1);
+            }
+            remember(text);
+        }
+    }
+
+    /**
+     * @return a stream whose output is appended to this log a line at a time
+     */
+    OutputStream outputStream() {
+        return new LineOutputStream();
+    }
+
+    private void remember(String text) {
+        text.lines().forEach(line -> {
+            tail.addLast(line);
+            if (tail.size() > TAIL_LINES)
+                tail.removeFirst();
+        });
+    }
+
+    /**
+     * @return the last lines written to this log
+     */
+    synchronized String tail() {
+        return String.join(System.lineSeparator(), tail);
+    }
+
+    private final class LineOutputStream extends OutputStream {
+        /* the line being written, up to its line break */
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            line.write(b);
+            if (b == '\n')
+                flushLine();
+        }
+
+        @Override
+        public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                write(bytes[i]);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            flushLine();
+        }
+
+        private void flushLine() throws IOException {
+            if (line.size() == 0)
+                return;
+            append(line.toString(StandardCharsets.UTF_8));
+            line.reset();
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs Specimin on many targets at once, on an executor that bounds how many Specimin runs are in
+ * flight and may be shared with other pools.
+ *
+ * <p>Targets are submitted one at a time and start running straight away. Each target's output
+ * goes to its own log file as it is produced, if there is a log directory, and only its last
+ * lines are kept in memory. Once everything submitted has finished, one line per target, plus the
+ * last lines of output for failed targets, is printed in target order, so neither the console
+ * output nor the results depend on which process finishes first.
+ *
+ * <p>A target Specimin fails on is retried a bounded number of times. If it still fails, it is
+ * recorded as failed and left out of the results rather than stopping the run.
+ *
+ * <p>Targets in the same file or package can be minimized in batches, with one Specimin run per
+ * batch, so the cost of parsing and resolving the project is shared between the batch's targets.
+ * Every target in a batch gets the batch's output directory, which {@link BatchSplitter} divides
+ * between them. A batch Specimin fails on is retried one target at a time.
+ */
+final class SpeciminPool implements AutoCloseable {
+    enum BatchMode {
+        NONE,
+        FILE,
+        PACKAGE
+    }
+
+    private record Result(String outputDirectory, SpeciminLog log, int attempts) {
+    }
+
+    /**
+     * What happened to one target.
+     *
+     * @param attempts        how many times Specimin was run on the target
+     * @param outputDirectory where Specimin's output is, or null if it failed
+     * @param error           why the last attempt failed, or null if it succeeded
+     * @param logFile         where Specimin's output is, or null if it was not kept
+     */
+    record Outcome(SpeciminTarget target, int attempts, @Nullable String outputDirectory, @Nullable String error,
+                   @Nullable Path logFile) {
+        boolean succeeded() {
+            return outputDirectory != null;
+        }
+    }
+
+    private final Executor executor;
+    private final SpeciminExecutor specimin;
+    private final @Nullable SpeciminCache cache;
+    private final String root;
+    private final String classPath;
+    private final int retries;
+    private final @Nullable Path logDirectory;
+    private final OutputStore store;
+    private final BatchMode batchMode;
+    private final int batchSize;
+    private final PrintStream out;
+    private final BiConsumer<List<SpeciminTarget>, String> onMinimized;
+    /* targets waiting for their batch to fill up, by batch key; only used by the submitting thread */
+    private final Map<String, List<SpeciminTarget>> pending = new LinkedHashMap<>();
+    /* outcomes of every target awaited so far, in the order they were awaited */
+    private final List<Outcome> outcomes = new ArrayList<>();
+    /* submitted targets, in the order their results are reported; only used by the submitting thread */
+    private final SortedMap<SpeciminTarget, Future<Result>> futures = new TreeMap<>();
+    /* everything handed to the executor and not yet awaited, to cancel on close */
+    private final List<Future<?>> tasks = new ArrayList<>();
+
+    /**
+     * @param executor  runs each Specimin run; its threads bound how many run at once
+     * @param specimin  runs Specimin for each target
+     * @param cache     earlier Specimin outputs to reuse, or null to always run Specimin
+     * @param root      the source root of the project
+     * @param classPath the library directory of the project
+     * @param retries      how many more times to run Specimin on a target it fails on
+     * @param logDirectory where to write a log file for each target, or null to only keep the last lines of output
+     * @param store        where each output's files are deduplicated as soon as Specimin is done with it
+     * @param batchMode    which targets may be minimized together
+     * @param batchSize    the most targets to minimize together
+     * @param out          where to print what happened to each target
+     * @param onMinimized  called with the targets Specimin minimized together, which is one target unless they
+     *                     were batched, and their output directory as soon as Specimin succeeds on them, on the
+     *                     thread that ran Specimin
+     */
+    SpeciminPool(Executor executor, SpeciminExecutor specimin, @Nullable SpeciminCache cache, String root, String classPath,
+                 int retries, @Nullable Path logDirectory, OutputStore store, BatchMode batchMode, int batchSize,
+                 PrintStream out, BiConsumer<List<SpeciminTarget>, String> onMinimized) {
+        this.executor = executor;
+        this.specimin = specimin;
+        this.cache = cache;
+        this.root = root;
+        this.classPath = classPath;
+        this.retries = retries;
+        this.logDirectory = logDirectory;
+        this.store = store;
+        this.batchMode = batchMode;
+        this.batchSize = batchSize;
+        this.out = out;
+        this.onMinimized = onMinimized;
+    }
+
+    /**
+     * Starts running Specimin on a target in the background, without waiting for earlier targets.
+     * Targets can be submitted while the checker is still reporting warnings.
+     *
+     * <p>When batching, the target waits until its batch is full, or until a target for another
+     * batch is submitted, since the checker reports the warnings in a file together.
+     */
+    void submit(SpeciminTarget target) {
+        if (futures.containsKey(target))
+            return;
+        if (batchMode == BatchMode.NONE) {
+            futures.put(target, start(() -> run(target)));
+            return;
+        }
+
+        var key = batchKey(target);
+        var batch = pending.computeIfAbsent(key, k -> new ArrayList<>());
+        if (batch.contains(target))
+            return;
+        batch.add(target);
+        for (var other : List.copyOf(pending.keySet())) {
+            var waiting = pending.get(other);
+            if (waiting != null && (!other.equals(key) || waiting.size() >= batchSize)) {
+                pending.remove(other);
+                startBatch(waiting);
+            }
+        }
+    }
+
+    private String batchKey(SpeciminTarget target) {
+        var file = target.targetFile();
+        return switch (batchMode) {
+            case NONE -> target.toString();
+            case FILE -> file;
+            case PACKAGE -> file.lastIndexOf('/') < 0 ? "" : file.substring(0, file.lastIndexOf('/'));
+        };
+    }
+
+    private void startBatch(List<SpeciminTarget> targets) {
+        var batch = targets.stream().sorted().toList();
+        if (batch.size() == 1) {
+            var target = batch.get(0);
+            futures.put(target, start(() -> run(target)));
+            return;
+        }
+        var results = new LinkedHashMap<SpeciminTarget, CompletableFuture<Result>>();
+        for (var target : batch) {
+            var result = new CompletableFuture<Result>();
+            results.put(target, result);
+            futures.put(target, result);
+        }
+        start(() -> {
+            runBatch(batch, results);
+            return null;
+        });
+    }
+
+    private <T> Future<T> start(Callable<T> body) {
+        var task = new FutureTask<>(body);
+        tasks.add(task);
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Waits for every submitted target, printing what happened to each in target order.
+     *
+     * @return the output directory for each submitted target Specimin succeeded on; the others are in {@link #outcomes}
+     * @throws InterruptedException if interrupted while waiting for Specimin
+     */
+    SortedMap<SpeciminTarget, String> awaitAll() throws InterruptedException {
+        for (var batch : pending.values()) {
+            startBatch(batch);
+        }
+        pending.clear();
+        var outputDirectories = new TreeMap<SpeciminTarget, String>();
+        for (var entry : futures.entrySet()) {
+            var target = entry.getKey();
+            try {
+                var result = entry.getValue().get();
+                var outcome = new Outcome(target, result.attempts(), result.outputDirectory(), null, result.log().file());
+                print(outcome, result.log());
+                outputDirectories.put(target, result.outputDirectory());
+                outcomes.add(outcome);
+            } catch (ExecutionException e) {
+                var cause = e.getCause();
+                if (cause instanceof SpeciminFailure failure) {
+                    var outcome = new Outcome(target, failure.attempts, null, String.valueOf(failure.getCause()), failure.log.file());
+                    print(outcome, failure.log);
+                    outcomes.add(outcome);
+                    continue;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+        futures.clear();
+        tasks.clear();
+        return outputDirectories;
+    }
+
+    /**
+     * @return what happened to every target awaited so far
+     */
+    List<Outcome> outcomes() {
+        return List.copyOf(outcomes);
+    }
+
+    /**
+     * @return the targets awaited so far that Specimin failed on
+     */
+    List<Outcome> failures() {
+        return outcomes.stream().filter(outcome -> !outcome.succeeded()).toList();
+    }
+
+    /**
+     * Writes one tab-separated line per target awaited so far: whether it succeeded, how many
+     * attempts it took, the target, its output directory or why it failed, and its log file.
+     */
+    void writeResults(Path file) throws IOException {
+        var lines = new ArrayList<String>();
+        lines.add("status\tattempts\ttype\tfile\tsignature\tresult\tlog");
+        for (var outcome : outcomes) {
+            var target = outcome.target();
+            var result = outcome.succeeded() ? outcome.outputDirectory() : outcome.error();
+            lines.add(String.join("\t",
+                    outcome.succeeded() ? "ok" : "failed",
+                    Integer.toString(outcome.attempts()),
+                    target.type().toString(),
+                    target.targetFile(),
+                    target.signature(),
+                    /* errors can span lines */
+                    String.valueOf(result).replaceAll("\\s+", " "),
+                    outcome.logFile() == null ? "" : String.valueOf(outcome.logFile())));
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    private Result run(SpeciminTarget target) throws SpeciminFailure {
+        SpeciminLog log;
+        try {
+            log = newLog(target.targetFile() + "-" + target.signature());
+        } catch (IOException e) {
+            throw new SpeciminFailure(SpeciminLog.inMemory(), 0, e);
+        }
+        for (int attempt = 1; ; attempt++) {
+            try (var span = Metrics.shared().span("specimin")) {
+                var outputDirectory = SpeciminTool.runSpeciminTool(
+                        specimin, cache, root, classPath, target.targetFile(), target.speciminSignature(), target.type(), log);
+                Metrics.shared().count("specimin.succeeded");
+                store.deduplicate(outputDirectory);
+                onMinimized.accept(List.of(target), outputDirectory);
+                return new Result(outputDirectory, log, attempt);
+            } catch (IOException e) {
+                appendQuietly(log, "Attempt " + attempt + " failed: " + e.getMessage() + System.lineSeparator());
+                if (attempt > retries) {
+                    Metrics.shared().count("specimin.failed");
+                    throw new SpeciminFailure(log, attempt, e);
+                }
+                Metrics.shared().count("specimin.retries");
+            } catch (InterruptedException e) {
+                /* the pool is shutting down, so there is no point retrying */
+                Metrics.shared().count("specimin.failed");
+                throw new SpeciminFailure(log, attempt, e);
+            }
+        }
+    }
+
+    /**
+     * Runs Specimin once for the whole batch, and if that fails, once for each of its targets.
+     */
+    private void runBatch(List<SpeciminTarget> batch, Map<SpeciminTarget, CompletableFuture<Result>> results) {
+        try {
+            var log = newLog("batch-" + batch.get(0).targetFile() + "-" + batch.get(0).signature());
+            String outputDirectory;
+            try (var span = Metrics.shared().span("specimin-batch")) {
+                log.append("Batch of " + batch.size() + " targets: " + batch + System.lineSeparator());
+                outputDirectory = SpeciminTool.runSpeciminBatch(specimin, cache, root, classPath, batch, log);
+                store.deduplicate(outputDirectory);
+            }
+            Metrics.shared().count("specimin.batches");
+            Metrics.shared().count("specimin.succeeded", batch.size());
+            onMinimized.accept(batch, outputDirectory);
+            for (var result : results.values()) {
+                result.complete(new Result(outputDirectory, log, 1));
+            }
+            return;
+        } catch (IOException e) {
+            Metrics.shared().count("specimin.batch-failures");
+        } catch (InterruptedException | RuntimeException e) {
+            results.values().forEach(result -> result.completeExceptionally(e));
+            return;
+        }
+
+        for (var entry : results.entrySet()) {
+            try {
+                entry.getValue().complete(run(entry.getKey()));
+            } catch (SpeciminFailure | RuntimeException e) {
+                entry.getValue().completeExceptionally(e);
+            }
+        }
+    }
+
+    private SpeciminLog newLog(String name) throws IOException {
+        if (logDirectory == null) {
+            return SpeciminLog.inMemory();
+        }
+        /* readable, but short enough for any file system, and unique thanks to the hash */
+        var readable = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        if (readable.length() > 100)
+            readable = readable.substring(readable.length() - 100);
+        var hash = Hashes.ofBytes(name.getBytes(StandardCharsets.UTF_8)).substring(0, 12);
+        return SpeciminLog.toFile(logDirectory.resolve(readable + "-" + hash + ".log"));
+    }
+
+    private static void appendQuietly(SpeciminLog log, String text) {
+        try {
+            log.append(text);
+        } catch (IOException e) {
+            /* the log file misses this line, but the failure itself is still reported */
+        }
+    }
+
+    private void print(Outcome outcome, SpeciminLog log) {
+        var logFile = outcome.logFile();
+        out.println(outcome.target() + (logFile == null ? "" : " (log: " + logFile + ")"));
+        if (!outcome.succeeded()) {
+            out.println("Failed after " + outcome.attempts() + " attempts: " + outcome.error());
+            out.println("Last lines of output:");
+            out.println(log.tail());
+        }
+    }
+
+    /**
+     * Carries the output Specimin produced before failing, so it can be printed with the target.
+     */
+    private static final class SpeciminFailure extends Exception {
+        final transient SpeciminLog log;
+        final int attempts;
+
+        SpeciminFailure(SpeciminLog log, int attempts, Exception cause) {
+            super(cause);
+            this.log = log;
+            this.attempts = attempts;
+        }
+    }
+
+    /**
+     * Stops every Specimin run this pool started that has not been awaited, leaving the executor
+     * to whoever else uses it.
+     */
+    @Override
+    public void close() {
+        for (var task : tasks) {
+            task.cancel(true);
+        }
+        tasks.clear();
+    }
+}
@@ -0,0 +1,48 @@
+package net.dogbuilt.wpi;
+
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * A field or method to run Specimin on.
+ *
+ * <p>A target is identified by its file, signature and type. Its Specimin signature only differs
+ * from its signature when parameter types are named by their erasure, since Specimin matches them
+ * as they are written, and is left out of comparisons.
+ *
+ * @param targetFile         the file containing the target, relative to the source root
+ * @param signature          the target, e.g. {@code pkg.Class#method(T1, T2)} or {@code pkg.Class#field}
+ * @param type               whether the target is a field or a method
+ * @param speciminSignature  the target as Specimin expects it, with parameter types as they are written
+ */
+record SpeciminTarget(String targetFile, String signature, SpeciminTool.SpeciminTargetType type,
+                      String speciminSignature) implements Comparable<SpeciminTarget> {
+    private static final Comparator<SpeciminTarget> ORDER = Comparator
+            .comparing(SpeciminTarget::signature)
+            .thenComparing(SpeciminTarget::type)
+            .thenComparing(SpeciminTarget::targetFile);
+
+    SpeciminTarget(String targetFile, String signature, SpeciminTool.SpeciminTargetType type) {
+        this(targetFile, signature, type, signature);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof SpeciminTarget target && compareTo(target) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(targetFile, signature, type);
+    }
+
+    @Override
+    public int compareTo(SpeciminTarget other) {
+        return ORDER.compare(this, other);
+    }
+
+    @Override
+    public String toString() {
+        return signature;
+    }
+}
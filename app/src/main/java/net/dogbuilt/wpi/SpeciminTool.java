@@ -5,16 +5,17 @@
 
 package net.dogbuilt.wpi;
 
-import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -23,6 +24,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -52,23 +54,85 @@ public final class SpeciminTool {
         throw new AssertionError("Cannot instantiate SpeciminTool");
     }
 
+    /**
+     * Parses Specimin's output, which we only read for its declarations, so none of what comments,
+     * tokens or lexical preservation would cost is paid. A parser is not thread-safe, so each thread
+     * gets its own.
+     */
+    private static final ThreadLocal<JavaParser> MINIMIZED_PARSER = ThreadLocal.withInitial(() ->
+            new JavaParser(new ParserConfiguration()
+                    .setLanguageLevel(CompilationUnitCache.LANGUAGE_LEVEL)
+                    .setAttributeComments(false)
+                    .setStoreTokens(false)
+                    .setLexicalPreservationEnabled(false)
+                    .setDetectOriginalLineSeparator(false)));
+
     enum SpeciminTargetType {
         METHOD,
         FIELD
     }
 
+    /**
+     * @param speciminPath Path to the Specimin project.
+     * @return Path to the Specimin jar built in that project.
+     */
+    static Path speciminJar(Path speciminPath) {
+        return speciminPath.resolve("build/libs/specimin.jar");
+    }
+
     /**
      * Executes and manages the Specimin tool using the specified paths and targets.
      *
+     * @param executor   Runs Specimin, either in a new process or in this JVM.
+     * @param cache      Cache of earlier Specimin outputs to reuse and add to, or null to always run Specimin.
      * @param root       The root directory for the tool.
      * @param targetFile File to be targeted by the tool.
      * @param target     field/method to be targeted by the tool.
      * @param type       whether we are targeting a field or method.
+     * @param log        where Specimin's output is written; it is filled in even if Specimin fails.
      * @return The directory path where the minimized file is saved.
      * @throws IOException          If there's an error executing the command or writing the minimized file.
      * @throws InterruptedException If the process execution is interrupted.
      */
-    public static String runSpeciminTool(Path javaPath, Path speciminPath, String root, String classPath, String targetFile, String target, SpeciminTargetType type)
+    public static String runSpeciminTool(SpeciminExecutor executor, @Nullable SpeciminCache cache, String root, String classPath,
+                                         String targetFile, String target, SpeciminTargetType type, SpeciminLog log)
+            throws IOException, InterruptedException {
+        if (cache == null) {
+            return runSpeciminTool(executor, root, classPath, targetFile, target, type, log);
+        }
+
+        var key = cache.key(root, targetFile, target, type);
+        var cached = cache.lookup(key);
+        if (cached != null) {
+            log.append("Specimin output cached in " + cached + System.lineSeparator());
+            return cached;
+        }
+
+        var staging = cache.newStagingDirectory();
+        try {
+            executor.execute(formatSpeciminArgs(staging.toString(), classPath, root, targetFile, target, type), log);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            cache.discard(staging);
+            throw e;
+        }
+        return cache.store(key, staging);
+    }
+
+    /**
+     * Executes and manages the Specimin tool using the specified paths and targets.
+     *
+     * @param executor   Runs Specimin, either in a new process or in this JVM.
+     * @param root       The root directory for the tool.
+     * @param targetFile File to be targeted by the tool.
+     * @param target     field/method to be targeted by the tool.
+     * @param type       whether we are targeting a field or method.
+     * @param log        where Specimin's output is written; it is filled in even if Specimin fails.
+     * @return The directory path where the minimized file is saved.
+     * @throws IOException          If there's an error executing the command or writing the minimized file.
+     * @throws InterruptedException If the process execution is interrupted.
+     */
+    public static String runSpeciminTool(SpeciminExecutor executor, String root, String classPath, String targetFile, String target, SpeciminTargetType type,
+                                         SpeciminLog log)
             throws IOException, InterruptedException {
 
         Path tempDir;
@@ -84,13 +148,71 @@ public final class SpeciminTool {
 
         List<String> argsWithOption = formatSpeciminArgs(tempDir.toString(), classPath, root, targetFile, target, type);
 
-        List<String> commands = prepareCommands(javaPath, speciminPath, argsWithOption);
-
-        startSpeciminProcess(commands, speciminPath);
+        executor.execute(argsWithOption, log);
 
         return tempDir.toString();
     }
 
+    /**
+     * Runs Specimin once for several targets, which may be in different files, so that it only
+     * parses and resolves the project once for all of them. The output holds what all the targets
+     * need; {@link BatchSplitter} divides it between them.
+     *
+     * @param cache   Cache of earlier Specimin outputs to reuse and add to, or null to always run Specimin.
+     * @param targets the fields and methods to minimize together
+     * @param log     where Specimin's output is written; it is filled in even if Specimin fails.
+     * @return The directory path where the minimized files are saved.
+     * @throws IOException          If there's an error executing the command or writing the minimized files.
+     * @throws InterruptedException If the process execution is interrupted.
+     */
+    static String runSpeciminBatch(SpeciminExecutor executor, @Nullable SpeciminCache cache, String root, String classPath,
+                                   List<SpeciminTarget> targets, SpeciminLog log)
+            throws IOException, InterruptedException {
+        if (cache == null) {
+            var outputDirectory = Files.createTempDirectory("specimin");
+            outputDirectory.toFile().deleteOnExit();
+            executor.execute(formatSpeciminBatchArgs(outputDirectory.toString(), classPath, root, targets), log);
+            return outputDirectory.toString();
+        }
+
+        var key = cache.key(root, targets);
+        var cached = cache.lookup(key);
+        if (cached != null) {
+            log.append("Specimin output cached in " + cached + System.lineSeparator());
+            return cached;
+        }
+
+        var staging = cache.newStagingDirectory();
+        try {
+            executor.execute(formatSpeciminBatchArgs(staging.toString(), classPath, root, targets), log);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            cache.discard(staging);
+            throw e;
+        }
+        return cache.store(key, staging);
+    }
+
+    /**
+     * Formats the arguments for running Specimin on several targets; Specimin accepts any number
+     * of {@code --targetFile}, {@code --targetMethod} and {@code --targetField} options.
+     */
+    private static List<String> formatSpeciminBatchArgs(
+            String outputDirectory, String classPath, String root, List<SpeciminTarget> targets) {
+        var args = new ArrayList<String>(List.of(
+                "--outputDirectory", outputDirectory,
+                "--root", root,
+                "--jarPath", classPath));
+        for (var targetFile : new TreeSet<>(targets.stream().map(SpeciminTarget::targetFile).toList())) {
+            args.add("--targetFile");
+            args.add(targetFile);
+        }
+        for (var target : targets) {
+            args.add(target.type() == SpeciminTargetType.METHOD ? "--targetMethod" : "--targetField");
+            args.add(target.speciminSignature());
+        }
+        return args;
+    }
+
     /**
      * Formats the arguments for the Specimin tool.
      *
@@ -112,55 +234,12 @@ public final class SpeciminTool {
         );
     }
 
-    /**
-     * Prepares the commands to be executed by the Specimin tool.
-     *
-     * @param speciminPath   Path to the Specimin tool.
-     * @param argsWithOption Formatted arguments string.
-     * @return List of commands for execution.
-     */
-    private static List<String> prepareCommands(Path javaPath, Path speciminPath, List<String> argsWithOption) {
-        List<String> commands = new ArrayList<>();
-        commands.add(javaPath.toString());
-        commands.add("-jar");
-        commands.add(speciminPath + "/build/libs/specimin.jar");
-        commands.addAll(argsWithOption);
-        return commands;
-    }
-
-
-    /**
-     * TODO: Specimin path should change to using a jar once we are ready
-     * Starts the Specimin process with the given commands and path to the Specimin project.
-     *
-     * @param commands     List of commands to be executed.
-     * @param speciminPath Path to the Specimin tool project.
-     *                     once we are ready
-     * @throws IOException          If there's an error executing the command or reading the output.
-     * @throws InterruptedException If the process execution is interrupted.
-     */
-    private static void startSpeciminProcess(List<String> commands, Path speciminPath)
-            throws IOException, InterruptedException {
-        ProcessBuilder builder = new ProcessBuilder(commands);
-        builder.redirectErrorStream(true);
-        builder.directory(new File(speciminPath.toString()));
-
-        Process process;
-        try {
-            process = builder.start();
-        } catch (IOException e) {
-            String errorMessage = "Failed to start the Specimin process";
-            throw new IOException(errorMessage, e);
-        }
-
-        logProcessOutput(process);
-        finalizeProcess(process);
-    }
-
     /**
      * Attempts to compile all Java files in the directory specified by the path.
      * * @param directoryPath the path to the directory containing minimized Java file(s) as a {@code String}
      *
+     * <p>This may be called from several threads at once.
+     *
      * @return set of fully-qualified fields/methods
      * @throws IOException if there's an error executing the command or reading the output
      */
@@ -175,99 +254,84 @@ public final class SpeciminTool {
             return Collections.emptySet();
         }
 
-        List<File> javaFiles = findAllJavaFilesInMinimizedDir(dir);
+        var output = new HashSet<String>();
+        for (File javaFile : findAllJavaFilesInMinimizedDir(dir)) {
+            output.addAll(fieldsAndMethods(javaFile));
+        }
+        return output;
+    }
 
+    /**
+     * @return the fully-qualified fields and methods of the classes in one minimized Java file
+     * @throws IOException if the file cannot be read
+     */
+    static Set<String> fieldsAndMethods(File javaFile) throws IOException {
         var output = new HashSet<String>();
-        for (File javaFile : javaFiles) {
-            var cu = StaticJavaParser.parse(javaFile);
-
-            var methods = cu.findAll(MethodDeclaration.class);
-            for (var method : methods) {
-                @Nullable ClassOrInterfaceDeclaration enclosing =
-                        method.findAncestor(ClassOrInterfaceDeclaration.class).orElse(null);
-
-                if (enclosing == null)
-                    continue;
-
-                var fullyQualifiedClassName = enclosing.getFullyQualifiedName().orElse(null);
-                if (fullyQualifiedClassName == null)
-                    continue;
-
-                var parameterTypes = method
-                        .getParameters()
-                        .stream()
-                        .map(p -> p.getTypeAsString() + (p.isVarArgs() ? "..." : ""))
-                        .collect(Collectors.joining(", "));
-                output.add(fullyQualifiedClassName + "#" + method.getName() + "(" + parameterTypes + ")");
-            }
-
-            var fields = cu.findAll(FieldDeclaration.class);
-            for (var field : fields) {
-                @Nullable ClassOrInterfaceDeclaration enclosing =
-                        field.findAncestor(ClassOrInterfaceDeclaration.class).orElse(null);
-
-                if (enclosing == null)
-                    continue;
-
-                var fullyQualifiedClassName = enclosing.getFullyQualifiedName().orElse(null);
-                if (fullyQualifiedClassName == null)
-                    continue;
-
-                output.add(fullyQualifiedClassName + "#" + field.getVariable(0).getName());
-            }
+        var cu = parseMinimized(javaFile);
+
+        for (var method : cu.findAll(MethodDeclaration.class)) {
+            var signature = signatureOf(method);
+            if (signature != null)
+                output.add(signature);
+        }
+        for (var field : cu.findAll(FieldDeclaration.class)) {
+            var signature = signatureOf(field);
+            if (signature != null)
+                output.add(signature);
         }
 
         return output;
     }
 
     /**
-     * Logs the output from the Specimin process. If there is an and the model is not dryrun, the
-     * logger will skip the output and provide a failure message. Else, the entirety of the output
-     * will be logged.
-     *
-     * @param process The running Specimin process.
-     * @throws IOException If there's an error reading the output.
+     * @return the method as {@code pkg.Class#method(T1, T2)}, or null if it is not in a class
      */
-    private static void logProcessOutput(Process process) throws IOException {
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader =
-                     new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Log the output if there's no exception or if running in dryrun mode.
-                // Logging the exception in dryrun mode is useful for reporting bugs in Specimin.
-                output.append(line).append(System.lineSeparator());
-            }
-        } catch (IOException e) {
-            String errorMessage = "Failed to read output from Specimin process";
-            throw new IOException(errorMessage, e);
-        }
+    static @Nullable String signatureOf(MethodDeclaration method) {
+        @Nullable ClassOrInterfaceDeclaration enclosing =
+                method.findAncestor(ClassOrInterfaceDeclaration.class).orElse(null);
+
+        if (enclosing == null)
+            return null;
+
+        var fullyQualifiedClassName = enclosing.getFullyQualifiedName().orElse(null);
+        if (fullyQualifiedClassName == null)
+            return null;
+
+        var parameterTypes = method
+                .getParameters()
+                .stream()
+                .map(p -> p.getTypeAsString() + (p.isVarArgs() ? "..." : ""))
+                .collect(Collectors.joining(", "));
+        return fullyQualifiedClassName + "#" + method.getName() + "(" + parameterTypes + ")";
+    }
+
+    /**
+     * @return the field as {@code pkg.Class#field}, after its first variable, or null if it is not in a class
+     */
+    static @Nullable String signatureOf(FieldDeclaration field) {
+        @Nullable ClassOrInterfaceDeclaration enclosing =
+                field.findAncestor(ClassOrInterfaceDeclaration.class).orElse(null);
 
-        // Prepend the output with a header
-        output.insert(0, System.lineSeparator() + "Specimin output:" + System.lineSeparator());
-        System.out.println(output);
+        if (enclosing == null)
+            return null;
+
+        var fullyQualifiedClassName = enclosing.getFullyQualifiedName().orElse(null);
+        if (fullyQualifiedClassName == null)
+            return null;
+
+        return fullyQualifiedClassName + "#" + field.getVariable(0).getName();
     }
 
     /**
-     * Finalizes the Specimin process by closing streams and destroying the process.
-     *
-     * @param process The running Specimin process.
-     * @throws InterruptedException If the process execution is interrupted.
-     * @throws IOException          If there's an error closing the streams.
+     * @throws ParseProblemException if the file is not valid Java, like {@code StaticJavaParser.parse}
      */
-    private static void finalizeProcess(Process process) throws InterruptedException, IOException {
-        try {
-            int exitValue = process.waitFor();
-            /* this seems to activate extraneously for some reason? */
-            if (exitValue != 0) {
-                String errorMessage = "Error executing the command. Exit value: " + exitValue + " command stderr:\n";
-                throw new InterruptedException(errorMessage);
-            }
-        } finally {
-            process.getErrorStream().close();
-            process.getOutputStream().close();
-            process.destroy();
+    static CompilationUnit parseMinimized(File javaFile) throws IOException {
+        var result = MINIMIZED_PARSER.get().parse(javaFile);
+        var cu = result.getResult().orElse(null);
+        if (!result.isSuccessful() || cu == null) {
+            throw new ParseProblemException(result.getProblems());
         }
+        return cu;
     }
 
     /**
@@ -277,7 +341,7 @@ public final class SpeciminTool {
      * @return the list of Java files in the directory
      * @throws IOException if there's an error reading the directory
      */
-    private static List<File> findAllJavaFilesInMinimizedDir(Path minimizedDir) throws IOException {
+    static List<File> findAllJavaFilesInMinimizedDir(Path minimizedDir) throws IOException {
         List<File> javaFiles;
         try (Stream<Path> paths = Files.walk(minimizedDir)) {
             javaFiles =
@@ -0,0 +1,128 @@
+package net.dogbuilt.wpi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A long-lived process that runs Specimin for {@link DaemonSpeciminExecutor}.
+ *
+ * <p>The worker reads one request per line from stdin and answers each with one line on stdout, in
+ * the order the requests arrived, so a client may send several requests before reading any answers.
+ * Fields are separated by tabs and escaped with {@link #escape}:
+ *
+ * <pre>
+ * request:  id TAB argument TAB argument ...
+ * response: id TAB (OK | FAIL) TAB used-heap-bytes TAB log TAB error-message
+ * </pre>
+ *
+ * <p>Specimin itself runs through an {@link InProcessSpeciminExecutor}, so its output ends up in the
+ * log field, of which only the last {@value SpeciminLog#TAIL_LINES} lines are sent, rather than on stdout. The worker exits when stdin is closed.
+ *
+ * <p>Usage: {@code SpeciminWorker specimin-path in-process-reuse}
+ */
+final class SpeciminWorker {
+    static final String OK = "OK";
+    static final String FAIL = "FAIL";
+
+    private SpeciminWorker() {
+        throw new AssertionError("Cannot instantiate SpeciminWorker");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: SpeciminWorker specimin-path in-process-reuse");
+            System.exit(2);
+        }
+
+        /* stdout is reserved for responses; anything else printed by accident goes to stderr */
+        var responses = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+        System.setOut(System.err);
+
+        var reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        try (var specimin = new InProcessSpeciminExecutor(Path.of(args[0]), Integer.parseInt(args[1]))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                var fields = split(line);
+                if (fields.isEmpty())
+                    continue;
+                var id = fields.get(0);
+                var arguments = fields.subList(1, fields.size());
+
+                /* only the last lines are sent back, so a chatty target cannot blow up the response */
+                var log = SpeciminLog.inMemory();
+                var status = OK;
+                var error = "";
+                try {
+                    specimin.execute(arguments, log);
+                } catch (IOException e) {
+                    status = FAIL;
+                    error = String.valueOf(e.getCause() == null ? e : e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                var runtime = Runtime.getRuntime();
+                long usedHeap = runtime.totalMemory() - runtime.freeMemory();
+                responses.println(String.join("\t", escape(id), status, Long.toString(usedHeap), escape(log.tail()), escape(error)));
+                responses.flush();
+            }
+        }
+    }
+
+    /**
+     * Escapes a field so it contains no tabs or line breaks.
+     */
+    static String escape(String field) {
+        var escaped = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            switch (c) {
+                case '\\' -> escaped.append("\\\\");
+                case '\t' -> escaped.append("\\t");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Splits a line into tab separated fields, undoing {@link #escape} on each.
+     */
+    static List<String> split(String line) {
+        if (line.isEmpty())
+            return List.of();
+        var fields = new ArrayList<String>();
+        for (var field : line.split("\t", -1)) {
+            fields.add(unescape(field));
+        }
+        return fields;
+    }
+
+    private static String unescape(String field) {
+        var unescaped = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c != '\\' || i + 1 >= field.length()) {
+                unescaped.append(c);
+                continue;
+            }
+            char next = field.charAt(++i);
+            switch (next) {
+                case 't' -> unescaped.append('\t');
+                case 'n' -> unescaped.append('\n');
+                case 'r' -> unescaped.append('\r');
+                default -> unescaped.append(next);
+            }
+        }
+        return unescaped.toString();
+    }
+}
@@ -1,50 +1,80 @@
 package net.dogbuilt.wpi;
 
-import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.Node;
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.body.EnumDeclaration;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
-import java.io.File;
+import javax.tools.Diagnostic;
 import java.io.FileNotFoundException;
 
-public record Warning(String file, int line) {
+/**
+ * An error the checker reported.
+ *
+ * @param column        the 1-based column of the error, with tabs expanded as javac does, or {@link Diagnostic#NOPOS} if unknown
+ * @param startPosition the character offset in the file where the erroneous code starts, or {@link Diagnostic#NOPOS}
+ * @param endPosition   the character offset in the file where the erroneous code ends, or {@link Diagnostic#NOPOS}
+ * @param key           the checker's message key, e.g. {@code argument}, or null if unknown
+ * @param checker       the fully qualified name of the checker that reported the error, or null if unknown
+ */
+public record Warning(String file, int line, long column, long startPosition, long endPosition, @Nullable String key,
+                      @Nullable String checker) {
+    /**
+     * A warning of which we only know the line.
+     */
+    Warning(String file, int line) {
+        this(file, line, null);
+    }
+
+    /**
+     * A warning of which we only know the line and the checker, as get-error-lines.sh reports them.
+     */
+    Warning(String file, int line, @Nullable String checker) {
+        this(file, line, Diagnostic.NOPOS, Diagnostic.NOPOS, Diagnostic.NOPOS, null, checker);
+    }
+
     /* TODO: this is almost certainly the wrong place for this */
     @Nullable MethodDeclaration getEnclosingMethod() throws FileNotFoundException {
-        return StaticJavaParser.parse(new File(file))
-                .findAll(MethodDeclaration.class)
-                .stream()
-                .filter(declaration -> declaration.getBegin().map(b -> b.line <= line).orElse(false))
-                .filter(declaration -> declaration.getEnd().map(e -> e.line >= line).orElse(false))
-                .findAny()
-                .orElse(null);
+        return getEnclosingMethod(CompilationUnitCache.shared().index(file));
+    }
+
+    /**
+     * @param index the declaration index for this warning's file
+     */
+    @Nullable MethodDeclaration getEnclosingMethod(DeclarationIndex index) {
+        return index.outermostEnclosing(line, MethodDeclaration.class);
     }
 
     @Nullable FieldDeclaration getEnclosingField() throws FileNotFoundException {
-        return StaticJavaParser.parse(new File(file)).
-                findAll(FieldDeclaration.class)
-                .stream()
-                .filter(declaration -> declaration.getBegin().map(b -> b.line <= line).orElse(false))
-                .filter(declaration -> declaration.getEnd().map(e -> e.line >= line).orElse(false))
-                .findAny()
-                .orElse(null);
+        return getEnclosingField(CompilationUnitCache.shared().index(file));
+    }
+
+    /**
+     * @param index the declaration index for this warning's file
+     */
+    @Nullable FieldDeclaration getEnclosingField(DeclarationIndex index) {
+        return index.outermostEnclosing(line, FieldDeclaration.class);
     }
 
-    /* TODO: this is needlessly slow.... */
     @Nullable String getFullyQualifiedClassName() throws FileNotFoundException {
-        var packageDeclaration = StaticJavaParser.parse(new File(file)).getPackageDeclaration();
+        return getFullyQualifiedClassName(CompilationUnitCache.shared().index(file));
+    }
+
+    /**
+     * @param index the declaration index for this warning's file
+     */
+    @Nullable String getFullyQualifiedClassName(DeclarationIndex index) {
+        var packageDeclaration = index.compilationUnit().getPackageDeclaration();
         if (packageDeclaration.isEmpty())
             return null;
 
-        var enclosingMethod = getEnclosingMethod();
+        var enclosingMethod = getEnclosingMethod(index);
         Node enclosing;
         if (enclosingMethod != null) {
             enclosing = enclosingMethod;
         } else {
-            var enclosingField = getEnclosingField();
+            var enclosingField = getEnclosingField(index);
             if (enclosingField != null) {
                 enclosing = enclosingField;
             } else {
@@ -52,16 +82,11 @@ public record Warning(String file, int line) {
             }
         }
 
-        // TODO: this isn't correct; consider the case of an enum inside of a class
-        var enclosingClass = enclosing.findAncestor(ClassOrInterfaceDeclaration.class).orElse(null);
-        var enclosingEnum = enclosing.findAncestor(EnumDeclaration.class).orElse(null);
-
-        if (enclosingClass != null) {
-            return enclosingClass.getFullyQualifiedName().orElse(null);
-        }
-        if (enclosingEnum != null) {
-            return enclosingEnum.getFullyQualifiedName().orElse(null);
-        }
-        return null;
+        /* the nearest class, interface, enum or record, so e.g. an enum nested in a class is named pkg.Outer.Inner */
+        TypeDeclaration<?> enclosingType = enclosing.findAncestor(TypeDeclaration.class).orElse(null);
+        if (enclosingType == null)
+            return null;
+        /* local classes have no name outside their method */
+        return enclosingType.getFullyQualifiedName().orElse(null);
     }
 }
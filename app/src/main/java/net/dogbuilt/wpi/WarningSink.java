@@ -0,0 +1,11 @@
+package net.dogbuilt.wpi;
+
+import java.io.IOException;
+
+/**
+ * Receives each warning as soon as the checker reports it.
+ */
+@FunctionalInterface
+interface WarningSink {
+    void accept(Warning warning) throws IOException;
+}
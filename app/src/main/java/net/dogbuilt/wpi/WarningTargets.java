@@ -0,0 +1,181 @@
+package net.dogbuilt.wpi;
+
+import com.github.javaparser.Position;
+import com.github.javaparser.ast.body.MethodDeclaration;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import javax.tools.Diagnostic;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Turns warnings into Specimin targets one at a time, as the checker reports them, so each target
+ * can be handed to Specimin without waiting for the rest of the warnings.
+ *
+ * <p>Since Specimin is fairly coarse, every warning in the same method or field maps to the same
+ * target, and only the first of them yields it, whichever checker reported it. Which targets each
+ * checker's warnings map to is still recorded, for per-checker statistics.
+ *
+ * <p>Warnings are looked up in the {@link SourceIndex} if there is one, and only files it could not
+ * parse are parsed again. Parameter types are named as they are written, which is how Specimin is
+ * given them, and if there is a {@link ProjectTypeSolver}, targets are also identified by the
+ * erasure of their parameter types, for which the warning's file is parsed.
+ */
+final class WarningTargets {
+    /* the source root, with a trailing slash, that target files are relative to */
+    private final String src;
+    private final @Nullable ProjectTypeSolver types;
+    private final @Nullable SourceIndex sources;
+    private final PrintStream out;
+    private final Set<SpeciminTarget> seen = new HashSet<>();
+    private final SortedMap<String, Set<SpeciminTarget>> byChecker = new TreeMap<>();
+
+    WarningTargets(String src) {
+        this(src, null, null, System.out);
+    }
+
+    /**
+     * @param types   resolves parameter types, or null to identify targets by them as they are written
+     * @param sources the index of the files under src, or null to parse each warning's file
+     * @param out     where to report warnings that cannot be resolved
+     */
+    WarningTargets(String src, @Nullable ProjectTypeSolver types, @Nullable SourceIndex sources, PrintStream out) {
+        this.src = src;
+        this.types = types;
+        this.sources = sources;
+        this.out = out;
+    }
+
+    /**
+     * @return the targets for the method and field enclosing the warning that have not been returned for an earlier warning
+     * @throws FileNotFoundException if the warning's file does not exist
+     */
+    List<SpeciminTarget> add(Warning warning) throws FileNotFoundException {
+        return add(warning, resolve(warning));
+    }
+
+    /**
+     * @return the targets for the method and field enclosing the warning, whether or not an earlier warning yielded them
+     * @throws FileNotFoundException if the warning's file does not exist
+     */
+    List<SpeciminTarget> resolve(Warning warning) throws FileNotFoundException {
+        var lines = lines(warning);
+        if (lines.method() == null && lines.field().isEmpty()) {
+            /* TODO: deal with warnings not at specimin-able locations */
+            return List.of();
+        }
+
+        var fullyQualifiedClassName = lines.className();
+        if (fullyQualifiedClassName == null) {
+            out.println(warning);
+            out.println("Could not find FQCN?");
+            return List.of();
+        }
+
+        // TODO: this is really janky and breaks when the argument has a trailing slash.
+        var targetFile = warning.file().substring(src.length());
+        var targets = new ArrayList<SpeciminTarget>(2);
+        if (lines.method() != null) {
+            var target = fullyQualifiedClassName + "#" + lines.method();
+            var resolved = fullyQualifiedClassName + "#" + resolvedMethod(warning, lines.method());
+            targets.add(new SpeciminTarget(targetFile, resolved, SpeciminTool.SpeciminTargetType.METHOD, target));
+        }
+        if (!lines.field().isEmpty()) {
+            var target = fullyQualifiedClassName + "#" + variable(lines.field(), warning);
+            targets.add(new SpeciminTarget(targetFile, target, SpeciminTool.SpeciminTargetType.FIELD));
+        }
+        return targets;
+    }
+
+    /**
+     * @return the method and field enclosing the warning, from the source index if it has the file
+     */
+    private SourceIndex.Lines lines(Warning warning) throws FileNotFoundException {
+        var sources = this.sources;
+        if (sources != null && warning.file().startsWith(src)) {
+            var declarations = sources.declarations(warning.file().substring(src.length()));
+            if (declarations != null) {
+                Metrics.shared().count("resolve.indexed");
+                return declarations.at(warning.line());
+            }
+        }
+        return SourceIndex.lines(warning, CompilationUnitCache.shared().index(warning.file()),
+                WarningTargets::parameterTypesAsWritten);
+    }
+
+    /**
+     * @param method the enclosing method, with parameter types as written
+     * @return the enclosing method with parameter types named by their erasure, or as written if there is no
+     * {@link ProjectTypeSolver}
+     */
+    private String resolvedMethod(Warning warning, String method) throws FileNotFoundException {
+        var types = this.types;
+        if (types == null)
+            return method;
+        var declaration = warning.getEnclosingMethod(CompilationUnitCache.shared().index(warning.file()));
+        if (declaration == null)
+            return method;
+        return declaration.getName() + "("
+                + declaration.getParameters().stream().map(types::erasure).collect(Collectors.joining(", ")) + ")";
+    }
+
+    /**
+     * Records the targets a warning resolved to, now or in an earlier run.
+     *
+     * @return those of the targets that have not been returned for an earlier warning
+     */
+    List<SpeciminTarget> add(Warning warning, List<SpeciminTarget> resolved) {
+        var targets = new ArrayList<>(resolved);
+        var checker = warning.checker();
+        if (checker != null) {
+            byChecker.computeIfAbsent(checker, k -> new HashSet<>()).addAll(targets);
+        }
+        targets.removeIf(target -> !seen.add(target));
+        return targets;
+    }
+
+    /**
+     * @return for each checker, the targets of its warnings so far, whether or not another checker's warning yielded them first
+     */
+    SortedMap<String, Set<SpeciminTarget>> byChecker() {
+        return byChecker;
+    }
+
+    /**
+     * @param field the variables of the field declaration the warning is in
+     * @return the name of the variable that the warning is on
+     */
+    private static String variable(List<SourceIndex.Variable> field, Warning warning) {
+        /* TODO: with just the line number from javac, we assume the warning is on the initializer for the first
+         *  variable in a declaration. With a column, we take the last variable starting at or before it; javac expands
+         *  tabs and JavaParser does not, so this can still be off on lines with tabs.
+         */
+        var chosen = field.get(0);
+        if (warning.column() == Diagnostic.NOPOS)
+            return chosen.name();
+        var position = new Position(warning.line(), (int) warning.column());
+        for (var variable : field) {
+            if (!new Position(variable.line(), variable.column()).isAfter(position)) {
+                chosen = variable;
+            }
+        }
+        return chosen.name();
+    }
+
+    // TODO: this is duplicated in specimin tool. this is bad
+    static String parameterTypesAsWritten(MethodDeclaration method) {
+        return method
+                .getParameters()
+                .stream()
+                .map(p -> p.getTypeAsString() + (p.isVarArgs() ? "..." : ""))
+                .collect(Collectors.joining(", "));
+    }
+}
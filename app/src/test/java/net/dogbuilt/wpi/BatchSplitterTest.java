@@ -0,0 +1,211 @@
+package net.dogbuilt.wpi;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class BatchSplitterTest {
+    /* what Specimin might keep for a batch of first and second */
+    private static final String SOURCE = """
+            package com.example;
+
+            public abstract class Batch {
+                private int shared;
+                private String onlyFirst;
+
+                public int first(String name) {
+                    return helper(name) + shared + onlyFirst.length();
+                }
+
+                public int second() {
+                    return this.shared + Other.twice(shared);
+                }
+
+                private int helper(String name) {
+                    throw new Error();
+                }
+
+                abstract void keptToCompile();
+            }
+
+            class Other {
+                static int twice(int value) {
+                    throw new Error();
+                }
+
+                static int twice(int value, int times) {
+                    throw new Error();
+                }
+            }
+            """;
+
+    @Test void followsReferencesFromEachTarget() throws IOException {
+        var directory = Files.createTempDirectory("batch");
+        var file = directory.resolve("com/example/Batch.java");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, SOURCE);
+
+        var first = new SpeciminTarget("com/example/Batch.java", "com.example.Batch#first(String)",
+                SpeciminTool.SpeciminTargetType.METHOD);
+        var second = new SpeciminTarget("com/example/Batch.java", "com.example.Batch#second()",
+                SpeciminTool.SpeciminTargetType.METHOD);
+        var split = BatchSplitter.split(directory.toString(), List.of(first, second));
+
+        assertEquals(Set.of(
+                "com.example.Batch#first(String)",
+                "com.example.Batch#helper(String)",
+                "com.example.Batch#shared",
+                "com.example.Batch#onlyFirst",
+                /* neither target refers to this, so both targets in its class get it */
+                "com.example.Batch#keptToCompile()"), split.get(first));
+        assertEquals(Set.of(
+                "com.example.Batch#second()",
+                "com.example.Batch#shared",
+                "com.example.Other#twice(int)",
+                "com.example.Batch#keptToCompile()"), split.get(second));
+        /* and this is in a class neither target is in, so neither gets it, rather than both overlapping on it */
+        assertFalse(split.get(first).contains("com.example.Other#twice(int, int)")
+                || split.get(second).contains("com.example.Other#twice(int, int)"));
+    }
+
+    @Test void givesEachTargetWhatTheClassesItCreatesNeed() throws IOException {
+        var directory = Files.createTempDirectory("batch");
+        var file = directory.resolve("com/example/Creates.java");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, """
+                package com.example;
+
+                class Creates {
+                    Widget make() {
+                        return new Widget();
+                    }
+
+                    int unrelated() {
+                        return 1;
+                    }
+                }
+
+                class Part {
+                    static int counter;
+
+                    Part(int size) {
+                        counter += size;
+                    }
+
+                    static int start() {
+                        return 0;
+                    }
+                }
+
+                class Widget extends Part {
+                    static int made;
+
+                    {
+                        made++;
+                    }
+
+                    Widget() {
+                        this(Part.start());
+                    }
+
+                    Widget(int size) {
+                        super(size);
+                    }
+                }
+                """);
+
+        var make = new SpeciminTarget("com/example/Creates.java", "com.example.Creates#make()",
+                SpeciminTool.SpeciminTargetType.METHOD);
+        var unrelated = new SpeciminTarget("com/example/Creates.java", "com.example.Creates#unrelated()",
+                SpeciminTool.SpeciminTargetType.METHOD);
+        var split = BatchSplitter.split(directory.toString(), List.of(make, unrelated));
+
+        /* through the creation, the initializer, this(...) and super(...) */
+        assertEquals(Set.of(
+                "com.example.Creates#make()",
+                "com.example.Widget#made",
+                "com.example.Part#start()",
+                "com.example.Part#counter"), split.get(make));
+        assertEquals(Set.of("com.example.Creates#unrelated()"), split.get(unrelated));
+    }
+
+    @Test void findsTargetsIdentifiedByErasedTypes() throws IOException {
+        var directory = Files.createTempDirectory("batch");
+        var file = directory.resolve("com/example/Overloads.java");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, """
+                package com.example;
+
+                class Overloads {
+                    int forList;
+                    int forName;
+
+                    void m(java.util.List<String> names) {
+                        forList++;
+                    }
+
+                    void m(String name) {
+                        forName++;
+                    }
+                }
+                """);
+
+        var list = new SpeciminTarget("com/example/Overloads.java", "com.example.Overloads#m(java.util.List)",
+                SpeciminTool.SpeciminTargetType.METHOD, "com.example.Overloads#m(java.util.List<String>)");
+        var name = new SpeciminTarget("com/example/Overloads.java", "com.example.Overloads#m(java.lang.String)",
+                SpeciminTool.SpeciminTargetType.METHOD, "com.example.Overloads#m(String)");
+        var split = BatchSplitter.split(directory.toString(), List.of(list, name));
+
+        assertEquals(Set.of("com.example.Overloads#m(java.util.List<String>)", "com.example.Overloads#forList"),
+                split.get(list));
+        assertEquals(Set.of("com.example.Overloads#m(String)", "com.example.Overloads#forName"), split.get(name));
+    }
+
+    @Test void givesEachTargetWhatItsClassStructureNeeds() throws IOException {
+        var directory = Files.createTempDirectory("batch");
+        var file = directory.resolve("com/example/Impl.java");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, """
+                package com.example;
+
+                abstract class Base {
+                    abstract void run();
+                }
+
+                class Impl extends Base {
+                    private final int count;
+
+                    Impl() {
+                        count = 1;
+                    }
+
+                    @Override
+                    void run() {
+                    }
+
+                    int second(Base base) {
+                        base.run();
+                        return count;
+                    }
+                }
+                """);
+
+        var first = new SpeciminTarget("com/example/Impl.java", "com.example.Impl#run()",
+                SpeciminTool.SpeciminTargetType.METHOD);
+        var second = new SpeciminTarget("com/example/Impl.java", "com.example.Impl#second(Base)",
+                SpeciminTool.SpeciminTargetType.METHOD);
+        var split = BatchSplitter.split(directory.toString(), List.of(first, second));
+
+        /* second refers to all of these by name; first still needs the method it overrides and what the constructor sets */
+        assertEquals(Set.of(
+                "com.example.Impl#run()",
+                "com.example.Base#run()",
+                "com.example.Impl#count"), split.get(first));
+    }
+}
@@ -0,0 +1,24 @@
+package net.dogbuilt.wpi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CheckersTest {
+    private static final String INDEX = "org.checkerframework.checker.index.IndexChecker";
+    private static final String RESOURCE_LEAK = "org.checkerframework.checker.resourceleak.ResourceLeakChecker";
+    private static final String NULLNESS = "org.checkerframework.checker.nullness.NullnessChecker";
+
+    @Test void attributesSubcheckerWarningsToTheirChecker() {
+        var checkers = List.of(NULLNESS, INDEX, RESOURCE_LEAK);
+
+        assertEquals(NULLNESS, Checkers.reporting(checkers, "nullness:argument"));
+        assertEquals(INDEX, Checkers.reporting(checkers, "upperbound:array.access.unsafe.high"));
+        assertEquals(INDEX, Checkers.reporting(checkers, "lowerbound:argument"));
+        assertEquals(RESOURCE_LEAK, Checkers.reporting(checkers, "mustcall:assignment"));
+        assertEquals(RESOURCE_LEAK, Checkers.reporting(checkers, "calledmethods:finalizer.invocation"));
+        assertEquals("unknown", Checkers.reporting(checkers, "unknown:key"));
+    }
+}
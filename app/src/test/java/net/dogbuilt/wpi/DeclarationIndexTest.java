@@ -0,0 +1,53 @@
+package net.dogbuilt.wpi;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DeclarationIndexTest {
+    private static final String SOURCE = """
+            package p;
+            class A {
+                int x = 1;
+                void m() {
+                    Runnable r = () -> {
+                        foo();
+                    };
+                    new Object() {
+                        void n() {}
+                    };
+                }
+                A() {}
+            }
+            """;
+
+    @Test void findsInnermostDeclaration() {
+        var index = DeclarationIndex.of(StaticJavaParser.parse(SOURCE));
+
+        assertNull(index.innermost(1));
+        assertEquals(DeclarationIndex.Kind.FIELD, kindAt(index, 3));
+        assertEquals(DeclarationIndex.Kind.METHOD, kindAt(index, 4));
+        assertEquals(DeclarationIndex.Kind.LAMBDA, kindAt(index, 6));
+        assertEquals(DeclarationIndex.Kind.CONSTRUCTOR, kindAt(index, 12));
+        assertNull(index.innermost(100));
+    }
+
+    @Test void targetsOutermostMethod() {
+        var index = DeclarationIndex.of(StaticJavaParser.parse(SOURCE));
+
+        var method = index.outermostEnclosing(9, MethodDeclaration.class);
+        assertNotNull(method);
+        assertEquals("m", method.getNameAsString());
+        assertNull(index.outermostEnclosing(12, MethodDeclaration.class));
+    }
+
+    private static DeclarationIndex.Kind kindAt(DeclarationIndex index, int line) {
+        var declaration = index.innermost(line);
+        assertNotNull(declaration);
+        return declaration.kind();
+    }
+}
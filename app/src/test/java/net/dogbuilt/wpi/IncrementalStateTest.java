@@ -0,0 +1,73 @@
+package net.dogbuilt.wpi;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IncrementalStateTest {
+    @Test void rechecksFilesThatUseAChangedTypeWithoutEarlierWarnings() throws IOException {
+        var project = Files.createTempDirectory("project");
+        Files.createDirectories(project.resolve("src/p"));
+        Files.writeString(project.resolve("src/p/A.java"), "package p; class A { @Nullable String get() { return null; } }");
+        Files.writeString(project.resolve("src/p/B.java"), "package p; class B { int length(A a) { return a.get().length(); } }");
+        Files.writeString(project.resolve("src/p/C.java"), "package p; class C extends A {}");
+        Files.writeString(project.resolve("src/p/D.java"), "package p; class D { int length() { return new C().get().length(); } }");
+        Files.writeString(project.resolve("src/p/E.java"), "package p; class E { int unrelated() { return 1; } }");
+        /* another package's A, and a file that uses it, which the change cannot affect */
+        Files.createDirectories(project.resolve("src/q"));
+        Files.writeString(project.resolve("src/q/A.java"), "package q; class A {}");
+        Files.writeString(project.resolve("src/q/F.java"), "package q; class F { A other; }");
+        Files.writeString(project.resolve("src/q/G.java"), "package q; import p.*; class G { A imported; }");
+
+        var before = new TreeMap<>(Map.of("src/p/A.java", "1", "src/p/B.java", "2", "src/p/C.java", "3",
+                "src/p/D.java", "4", "src/p/E.java", "5", "src/q/A.java", "6", "src/q/F.java", "7"));
+        before.put("src/q/G.java", "8");
+        var after = new TreeMap<>(before);
+        after.put("src/p/A.java", "changed");
+        /* none of the files had warnings, so there are no earlier targets to follow */
+        var state = new IncrementalState("checker", before, Map.of(), Map.of());
+
+        var changed = state.changedFiles(after);
+        assertEquals(Set.of("src/p/A.java"), changed);
+        assertEquals(Set.of("src/p/A.java", "src/p/B.java", "src/p/C.java", "src/p/D.java", "src/q/G.java"),
+                state.filesToRecheck(changed, after, project.toString(), SourceIndex.build(project.resolve("src"), null)));
+    }
+
+    @Test void keepsWarningColumnsAndKeys() throws IOException {
+        var project = Files.createTempDirectory("project").toString();
+        var onB = new Warning(project + "/src/p/A.java", 3, 16, 40, 41, "assignment", "checker");
+        var lineOnly = new Warning(project + "/src/p/A.java", 5, "checker");
+        var file = Files.createTempDirectory("state").resolve("state");
+        new IncrementalState("checker", Map.of(), IncrementalState.warningsByFile(List.of(onB, lineOnly), project), Map.of())
+                .save(file);
+
+        var loaded = IncrementalState.load(file);
+        assertEquals(List.of(onB, lineOnly), loaded == null ? null : loaded.warningsExcept(Set.of(), Set.of(), project));
+    }
+
+    @Test void dropsTheWarningsOfARemovedFile() throws IOException {
+        var project = Files.createTempDirectory("project");
+        Files.createDirectories(project.resolve("src/p"));
+        Files.writeString(project.resolve("src/p/A.java"), "package p; class A { int kept() { return 1; } }");
+        var onA = new Warning(project + "/src/p/A.java", 1, "checker");
+        var onRemoved = new Warning(project + "/src/p/Removed.java", 1, "checker");
+        var state = new IncrementalState("checker", Map.of("src/p/A.java", "1", "src/p/Removed.java", "2"),
+                IncrementalState.warningsByFile(List.of(onA, onRemoved), project.toString()), Map.of());
+
+        var after = Map.of("src/p/A.java", "1");
+        var changed = state.changedFiles(after);
+        assertEquals(Set.of("src/p/Removed.java"), changed);
+        var recheck = state.filesToRecheck(changed, after, project.toString(),
+                SourceIndex.build(project.resolve("src"), null));
+        assertEquals(Set.of(), recheck);
+        /* the removed file's warnings are not replayed, so nothing tries to resolve them against a missing file */
+        assertEquals(List.of(onA), state.warningsExcept(recheck, changed, project.toString()));
+    }
+}
@@ -0,0 +1,82 @@
+package net.dogbuilt.wpi;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalTest {
+    private static final SpeciminTarget FIRST =
+            new SpeciminTarget("pkg/A.java", "pkg.A#first()", SpeciminTool.SpeciminTargetType.METHOD);
+    private static final SpeciminTarget SECOND =
+            new SpeciminTarget("pkg/A.java", "pkg.A#second", SpeciminTool.SpeciminTargetType.FIELD);
+    private static final SpeciminTarget ERASED = new SpeciminTarget("pkg/A.java", "pkg.A#third(java.util.List)",
+            SpeciminTool.SpeciminTargetType.METHOD, "pkg.A#third(List<String>)");
+
+    @Test void resumesWhatWasFinishedBeforeACrash() throws IOException {
+        var project = Files.createTempDirectory("project");
+        Files.createDirectories(project.resolve("src/pkg"));
+        Files.writeString(project.resolve("src/pkg/A.java"), "package pkg; class A {}");
+        /* what Specimin kept for a batch of both targets */
+        var output = Files.createTempDirectory("output").toString();
+        Files.createDirectories(Path.of(output, "pkg"));
+        Files.writeString(Path.of(output, "pkg/A.java"),
+                "package pkg; class A { int second; int counter; void first() { counter++; } }");
+        var file = Files.createTempDirectory("checkpoint").resolve("journal");
+
+        try (var journal = Journal.open(file, project.toString(), "checker", false)) {
+            journal.warning(new Warning(project + "/src/pkg/A.java", 3, "checker"), List.of(FIRST, SECOND, ERASED));
+            journal.checkerFinished();
+            journal.output(List.of(FIRST, SECOND), output);
+            journal.record(new IncrementalState.TargetRecord(FIRST, output, Set.of("src/pkg/A.java"),
+                    SignatureSet.of(List.of("pkg.A#first()"), SignatureTable.shared())));
+        }
+        /* the run dies while writing the second record */
+        Files.writeString(file, "R\tpkg/A.java\tFIELD\tpkg.A#second\t" + output + "\t1\t1\nI\tsrc/pkg/A.java\n",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        try (var journal = Journal.open(file, project.toString(), "checker", true)) {
+            assertTrue(journal.checked());
+            var warnings = journal.warnings();
+            assertEquals(1, warnings.size());
+            assertEquals(project + "/src/pkg/A.java", warnings.get(0).warning().file());
+            assertEquals(List.of(FIRST, SECOND, ERASED), warnings.get(0).targets());
+            assertEquals("pkg.A#third(List<String>)", warnings.get(0).targets().get(2).speciminSignature());
+            assertEquals(output, journal.output(SECOND));
+            assertEquals(List.of(FIRST, SECOND), journal.batch(output));
+            var record = journal.record(FIRST);
+            assertEquals(List.of("pkg.A#first()"), record == null ? null : record.signatures().signatures(SignatureTable.shared()));
+            assertNull(journal.record(SECOND));
+
+            /* the second target's declarations are still divided out of the whole batch's output */
+            var store = new OutputStore(null, SignatureTable.shared());
+            assertEquals(List.of("pkg.A#second"), store.fieldsAndMethods(output, journal.batch(output)).get(SECOND)
+                    .signatures(SignatureTable.shared()));
+        }
+
+        /* a batch whose lines were cut off is not resumed */
+        Files.writeString(file, "O\tpkg/B.java\tMETHOD\tpkg.B#b()\t" + output + "-b\t2\n",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        Files.createDirectories(Path.of(output + "-b"));
+        try (var journal = Journal.open(file, project.toString(), "checker", true)) {
+            assertNull(journal.output(new SpeciminTarget("pkg/B.java", "pkg.B#b()", SpeciminTool.SpeciminTargetType.METHOD)));
+            assertEquals(output, journal.output(FIRST));
+        }
+
+        /* without --resume, or for another checker, everything is done again */
+        try (var journal = Journal.open(file, project.toString(), "other", true)) {
+            assertFalse(journal.checked());
+            assertNull(journal.output(FIRST));
+        }
+    }
+}
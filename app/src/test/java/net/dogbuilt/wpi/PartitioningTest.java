@@ -0,0 +1,107 @@
+package net.dogbuilt.wpi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PartitioningTest {
+    @Test void chainsOfOverlapsShareAPartition() {
+        var result = Partitioning.compute(intern(List.of(
+                Set.of("a#x", "a#y"),
+                Set.of("a#y", "b#z"),
+                Set.of("b#z", "c#w"),
+                Set.of("d#v"),
+                Set.of())));
+
+        assertEquals(List.of(3, 1, 1), result.partitionSizes());
+        assertEquals(2, result.conflictDeclarations());
+        assertEquals(5, result.declarations());
+    }
+
+    @Test void matchesPairwiseComparison() {
+        var random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            var outputs = new ArrayList<Set<String>>();
+            for (int i = 0; i < 40; i++) {
+                var output = new HashSet<String>();
+                int size = random.nextInt(5);
+                for (int j = 0; j < size; j++) {
+                    output.add("C#m" + random.nextInt(120));
+                }
+                outputs.add(output);
+            }
+
+            var result = Partitioning.compute(intern(outputs));
+            assertEquals(pairwisePartitionSizes(outputs), result.partitionSizes());
+            assertEquals(pairwiseConflicts(outputs).size(), result.conflictDeclarations());
+        }
+    }
+
+    @Test void intersectsInternedSets() {
+        var table = new SignatureTable();
+        var a = SignatureSet.of(List.of("a#x", "a#y", "b#z", "a#x"), table);
+        var b = SignatureSet.of(List.of("b#z", "c#w", "a#x"), table);
+
+        assertEquals(3, a.size());
+        assertEquals(2, a.intersectionSize(b));
+        assertEquals(a, SignatureSet.of(Set.of("b#z", "a#y", "a#x"), table));
+    }
+
+    private static List<SignatureSet> intern(List<Set<String>> outputs) {
+        var table = new SignatureTable();
+        return outputs.stream().map(output -> SignatureSet.of(output, table)).toList();
+    }
+
+    /* the straightforward quadratic computation, as a reference */
+    private static List<Integer> pairwisePartitionSizes(List<Set<String>> outputs) {
+        var partition = new int[outputs.size()];
+        for (int i = 0; i < partition.length; i++) {
+            partition[i] = i;
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < outputs.size(); i++) {
+                for (int j = 0; j < outputs.size(); j++) {
+                    var intersection = new HashSet<>(outputs.get(i));
+                    intersection.retainAll(outputs.get(j));
+                    if (!intersection.isEmpty() && partition[i] != partition[j]) {
+                        int smaller = Math.min(partition[i], partition[j]);
+                        partition[i] = smaller;
+                        partition[j] = smaller;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        var sizes = new int[outputs.size()];
+        for (int p : partition) {
+            sizes[p]++;
+        }
+        var result = new ArrayList<Integer>();
+        for (int size : sizes) {
+            if (size > 0)
+                result.add(size);
+        }
+        result.sort((a, b) -> b - a);
+        return result;
+    }
+
+    private static Set<String> pairwiseConflicts(List<Set<String>> outputs) {
+        var conflicts = new HashSet<String>();
+        for (int i = 0; i < outputs.size(); i++) {
+            for (int j = i + 1; j < outputs.size(); j++) {
+                var intersection = new HashSet<>(outputs.get(i));
+                intersection.retainAll(outputs.get(j));
+                conflicts.addAll(intersection);
+            }
+        }
+        return conflicts;
+    }
+}
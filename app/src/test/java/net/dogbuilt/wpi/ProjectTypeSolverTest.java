@@ -0,0 +1,64 @@
+package net.dogbuilt.wpi;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProjectTypeSolverTest {
+    private static final String SOURCE = """
+            package com.ex;
+
+            import java.util.List;
+            import java.util.Map;
+
+            class A<T> {
+                void plain(T value, List<String> names, Map.Entry<String, T> entry) {}
+
+                <T extends Comparable<T>> void sort(T[] items, String... rest) {
+                    new Object() {
+                        void compare(T item) {}
+                    };
+                }
+
+                void unknown(NoSuchType thing) {}
+
+                enum Mode {
+                    ON;
+                    void flip(Mode other) {}
+                }
+
+                record Point(int x) {
+                    void move(Point to, B other) {}
+                }
+            }
+            """;
+
+    @Test void namesParameterTypesByTheirErasure() throws IOException {
+        var project = Files.createTempDirectory("project");
+        var src = project.resolve("src");
+        Files.createDirectories(src.resolve("com/ex"));
+        Files.writeString(src.resolve("com/ex/A.java"), SOURCE);
+        Files.writeString(src.resolve("com/ex/B.java"), "package com.ex; class B {}");
+        var types = ProjectTypeSolver.open(src.toString(), project.resolve("lib").toString());
+        var unit = CompilationUnitCache.parse(SOURCE);
+
+        assertEquals("java.lang.Object, java.util.List, java.util.Map.Entry", parameterTypes(types, unit, "plain"));
+        assertEquals("java.lang.Comparable[], java.lang.String...", parameterTypes(types, unit, "sort"));
+        /* the method's T, not the class's, which was just memoized */
+        assertEquals("java.lang.Comparable", parameterTypes(types, unit, "compare"));
+        assertEquals("NoSuchType", parameterTypes(types, unit, "unknown"));
+        assertEquals("com.ex.A.Mode", parameterTypes(types, unit, "flip"));
+        assertEquals("com.ex.A.Point, com.ex.B", parameterTypes(types, unit, "move"));
+    }
+
+    private static String parameterTypes(ProjectTypeSolver types, CompilationUnit unit, String method) {
+        var declaration = unit.findFirst(MethodDeclaration.class, m -> m.getNameAsString().equals(method)).orElseThrow();
+        return declaration.getParameters().stream().map(types::erasure).collect(Collectors.joining(", "));
+    }
+}
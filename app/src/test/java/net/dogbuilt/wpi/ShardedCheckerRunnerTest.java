@@ -0,0 +1,21 @@
+package net.dogbuilt.wpi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShardedCheckerRunnerTest {
+    @Test void keepsPackagesTogetherAndBalancesShards() {
+        var shards = ShardedCheckerRunner.shard(List.of(
+                "src/a/A1.java", "src/a/A2.java", "src/a/A3.java",
+                "src/b/B1.java", "src/b/B2.java",
+                "src/c/C1.java",
+                "src/d/D1.java"), 2);
+
+        assertEquals(List.of(
+                List.of("src/a/A1.java", "src/a/A2.java", "src/a/A3.java", "src/d/D1.java"),
+                List.of("src/b/B1.java", "src/b/B2.java", "src/c/C1.java")), shards);
+    }
+}
@@ -0,0 +1,75 @@
+package net.dogbuilt.wpi;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SourceIndexTest {
+    private static final String SOURCE = """
+            package p;
+            class A {
+                int x = 1, y = 2;
+                void m(java.util.List<String> l, int... rest) {
+                    new Object() {
+                        void n() {}
+                    };
+                }
+                enum E {
+                    ONE;
+                    void flip() {}
+                }
+            }
+            class B {
+                String s;
+            }
+            """;
+
+    @Test void resolvesLikeTheParsedFile() throws IOException {
+        var src = Files.createTempDirectory("src");
+        Files.createDirectories(src.resolve("p"));
+        var file = src.resolve("p/A.java");
+        Files.writeString(file, SOURCE);
+        Files.writeString(src.resolve("Broken.java"), "class {");
+        var root = src + "/";
+
+        var index = SourceIndex.build(src, null);
+        var declarations = index.declarations("p/A.java");
+        assertTrue(declarations != null && declarations.packageName().equals("p"));
+        assertEquals(List.of(new SourceIndex.Type("A", List.of()), new SourceIndex.Type("A.E", List.of()),
+                new SourceIndex.Type("B", List.of())), declarations.types());
+        assertEquals(null, index.declarations("Broken.java"));
+
+        var indexed = new WarningTargets(root, null, index, System.out);
+        var parsed = new WarningTargets(root);
+        for (int line = 1; line <= 16; line++) {
+            for (var warning : List.of(new Warning(file.toString(), line),
+                    new Warning(file.toString(), line, 20, -1, -1, null, null))) {
+                assertEquals(parsed.resolve(warning), indexed.resolve(warning), warning.toString());
+            }
+        }
+
+        /* saved and loaded again, nothing is read, and what was read resolves the same */
+        var saved = Files.createTempDirectory("index").resolve("source-index");
+        index.save(saved);
+        var loaded = SourceIndex.load(saved);
+        var rebuilt = SourceIndex.build(src, loaded);
+        assertEquals("Source index: 2 files, 0 read, 0 parsed", rebuilt.stats());
+        /* a hash that was not read is not vouched for, since an edit can keep the size and modification time */
+        assertTrue(index.hash("p/A.java") != null);
+        assertNull(rebuilt.hash("p/A.java"));
+        var reloaded = new WarningTargets(root, null, rebuilt, System.out);
+        assertEquals(List.of(new SpeciminTarget("p/A.java", "p.A#y", SpeciminTool.SpeciminTargetType.FIELD)),
+                reloaded.resolve(new Warning(file.toString(), 3, 20, -1, -1, null, null)));
+        assertEquals(List.of(new SpeciminTarget("p/A.java", "p.A#m(java.util.List<String>, int...)",
+                        SpeciminTool.SpeciminTargetType.METHOD)),
+                reloaded.resolve(new Warning(file.toString(), 6)));
+        assertEquals(List.of(new SpeciminTarget("p/A.java", "p.A.E#flip()", SpeciminTool.SpeciminTargetType.METHOD)),
+                reloaded.resolve(new Warning(file.toString(), 11)));
+    }
+}
@@ -0,0 +1,54 @@
+package net.dogbuilt.wpi;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpeciminToolTest {
+    private static final String SOURCE = """
+            package com.example;
+
+            /** A class as Specimin might leave it. */
+            public class Outer {
+                // a comment that is not attributed
+                private int count, other;
+
+                public void run(/* inline */ String name, int... rest) {
+                    throw new Error();
+                }
+
+                static class Inner {
+                    java.util.List<String> names;
+
+                    <T> T pick(@Deprecated T first, T[] others) {
+                        throw new Error();
+                    }
+                }
+            }
+
+            enum Ignored {
+                A;
+
+                void skipped() {
+                }
+            }
+            """;
+
+    @Test void listsFieldsAndMethodsOfClasses() throws IOException {
+        var directory = Files.createTempDirectory("minimized");
+        var file = directory.resolve("com/example/Outer.java");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, SOURCE);
+
+        assertEquals(Set.of(
+                "com.example.Outer#count",
+                "com.example.Outer#run(String, int...)",
+                "com.example.Outer.Inner#names",
+                "com.example.Outer.Inner#pick(T, T[])"),
+                SpeciminTool.minimizedFilesFieldsAndMethods(directory.toString()));
+    }
+}
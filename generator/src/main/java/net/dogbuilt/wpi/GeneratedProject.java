@@ -0,0 +1,41 @@
+package net.dogbuilt.wpi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A project made by {@link ProjectGenerator}.
+ *
+ * @param directory the project directory
+ * @param warnings  the warnings the Nullness Checker should report, one per seeded bug, in file order
+ */
+record GeneratedProject(Path directory, List<Warning> warnings) {
+    /**
+     * @return the source root, with a trailing slash, as {@link App} passes it around
+     */
+    String src() {
+        return directory + "/src/";
+    }
+
+    /**
+     * @return the warnings as get-error-lines.sh prints them
+     */
+    List<String> checkerOutput() {
+        return warnings.stream().map(warning -> warning.file() + "\t" + warning.line() + "\tnullness:argument").toList();
+    }
+
+    /**
+     * Deletes the project directory.
+     */
+    void delete() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package net.dogbuilt.wpi;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the pipeline on a project one phase at a time, optionally generating the project first, and
+ * prints how long each phase took and how much heap this JVM used at most during it, sampled every
+ * {@value #SAMPLE_MILLIS} ms.
+ *
+ * <p>Unlike {@link App}, the checker is run to completion before any warning is resolved, so each
+ * phase can be measured on its own. Memory used by Specimin processes is not included; run with
+ * {@code --specimin-mode in-process} to count Specimin's memory too.
+ */
+final class LoadTest {
+    static final String USAGE = """
+            usage: loadtest [generator options --] [app options] checker project-directory
+            with generator options, a project is generated in project-directory first; see the
+            generator's and the app's usage for their options""";
+
+    private static final long SAMPLE_MILLIS = 10;
+
+    private record Phase(String name, long wallMillis, long peakHeapBytes) {
+    }
+
+    private final List<Phase> phases = new ArrayList<>();
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        var separator = Arrays.asList(args).indexOf("--");
+        var generatorArgs = separator < 0 ? List.<String>of() : List.of(args).subList(0, separator);
+        var appArgs = separator < 0 ? args : Arrays.copyOfRange(args, separator + 1, args.length);
+
+        Options options;
+        ProjectGenerator.@Nullable Config config = null;
+        try {
+            options = Options.parse(appArgs);
+            if (separator >= 0)
+                config = ProjectGenerator.Config.parse(generatorArgs);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println(USAGE);
+            return;
+        }
+
+        var loadTest = new LoadTest();
+        loadTest.run(options, config);
+        loadTest.print();
+    }
+
+    /**
+     * @param config how to generate the project first, or null to use the project as it is
+     */
+    private void run(Options options, ProjectGenerator.@Nullable Config config) throws Exception {
+        var speciminPath = App.readEnvironmentVariable("SPECIMIN");
+        var javaPath = App.readEnvironmentVariable("JAVA_HOME").resolve("bin/java");
+        var src = options.projectDirectory + "/src/";
+        var lib = options.projectDirectory + "/lib/";
+
+        if (config != null) {
+            var generated = phase("generate", () -> ProjectGenerator.generate(Path.of(options.projectDirectory), config));
+            System.out.println("Seeded bugs: " + generated.warnings().size());
+        }
+
+        var checkerRunner = App.checkerRunner(options);
+        var warnings = phase("check", () -> {
+            var reported = new ArrayList<Warning>();
+            checkerRunner.run(options.checker, options.projectDirectory, List.of(), reported::add, System.out);
+            return reported;
+        });
+        System.out.println("Warnings: " + warnings.size());
+
+        var targets = phase("resolve", () -> {
+            var warningTargets = new WarningTargets(src);
+            var resolved = new ArrayList<SpeciminTarget>();
+            for (var warning : warnings) {
+                resolved.addAll(warningTargets.add(warning));
+            }
+            return resolved;
+        });
+        System.out.println("Targets: " + targets.size());
+
+        var store = App.outputStore(options);
+        var outputDirectories = phase("minimize", () -> {
+            try (var scheduler = new JobScheduler(options.jobs);
+                 var specimin = App.speciminExecutor(options, javaPath, speciminPath);
+                 var pool = new SpeciminPool(scheduler.forPriority(0), specimin, null, src, lib, options.retries,
+                         options.logDirectory, store, options.batchMode, options.batchSize, System.out,
+                         (batch, outputDirectory) -> {
+                         })) {
+                if (options.logDirectory != null)
+                    Files.createDirectories(options.logDirectory);
+                targets.forEach(pool::submit);
+                return pool.awaitAll();
+            }
+        });
+
+        var signatureSets = phase("signatures", () -> {
+            var sets = outputDirectories.values().parallelStream().map(outputDirectory -> {
+                try {
+                    return store.fieldsAndMethods(outputDirectory);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toSet());
+            return List.copyOf(sets);
+        });
+
+        var partitioning = phase("partition", () -> Partitioning.compute(signatureSets));
+        System.out.println("Partition count: " + partitioning.partitionCount());
+    }
+
+    /**
+     * Runs a phase, recording its wall time and peak heap usage.
+     */
+    private <T> T phase(String name, Callable<T> body) throws Exception {
+        /* each heap pool peaks at a different time, so adding up their peaks overstates the heap's */
+        var heap = ManagementFactory.getMemoryMXBean();
+        var peakHeap = new AtomicLong(heap.getHeapMemoryUsage().getUsed());
+        var sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(heap.getHeapMemoryUsage().getUsed(), Math::max),
+                SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = body.call();
+        } finally {
+            sampler.shutdownNow();
+        }
+        long wallMillis = (System.nanoTime() - start) / 1_000_000;
+        peakHeap.accumulateAndGet(heap.getHeapMemoryUsage().getUsed(), Math::max);
+        phases.add(new Phase(name, wallMillis, peakHeap.get()));
+        return result;
+    }
+
+    private void print() {
+        System.out.println("phase\twall-ms\tpeak-heap-mb");
+        for (var phase : phases) {
+            System.out.println(phase.name() + "\t" + phase.wallMillis() + "\t" + phase.peakHeapBytes() / (1024 * 1024));
+        }
+    }
+}
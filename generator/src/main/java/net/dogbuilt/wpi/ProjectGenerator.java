@@ -0,0 +1,195 @@
+package net.dogbuilt.wpi;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates projects laid out like njr-1 ({@code src/} and an empty {@code lib/}), with a chosen
+ * number of classes, calls between them and seeded nullness bugs, for load testing the pipeline.
+ *
+ * <p>Every class has the same shape:
+ *
+ * <pre>
+ * package pkg0;
+ *
+ * public class Class3 {
+ *     private int field0 = 0;
+ *
+ *     public int method0(int argument, String name) {
+ *         int result = argument + field0;
+ *         result += new pkg1.Class27().method4(result, name);   // one line per call
+ *         result += new pkg0.Class9().describe(null);          // one line per seeded bug
+ *         return result;
+ *     }
+ *
+ *     public int describe(String name) {
+ *         return name.length();
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>Like the examples, each seeded bug passes null to a parameter that should be nullable, and is
+ * reported by the Nullness Checker as an {@code argument} error on the bug's line. Calls go to
+ * random methods of random classes, so the more calls there are, the more Specimin outputs overlap.
+ */
+final class ProjectGenerator {
+    static final String USAGE = """
+            usage: generator directory [options]
+              --classes N       number of classes (default: 100)
+              --methods N       methods (and fields) per class (default: 10)
+              --calls N         calls to other classes' methods in each method (default: 2)
+              --bugs N          seeded nullness bugs in each method (default: 1)
+              --package-size N  classes per package (default: 20)
+              --seed N          random seed (default: 0)""";
+
+    /**
+     * @param classes           the number of classes, one per file
+     * @param methodsPerClass   the number of methods, and of fields, in each class
+     * @param callsPerMethod    the number of calls each method makes to methods of random classes
+     * @param bugsPerMethod     the number of nullness bugs seeded in each method
+     * @param classesPerPackage the number of classes in each package
+     * @param seed              the seed for choosing what is called
+     */
+    record Config(int classes, int methodsPerClass, int callsPerMethod, int bugsPerMethod, int classesPerPackage,
+                  long seed) {
+        /**
+         * @return the configuration given by {@code --name value} options, with defaults for the rest
+         * @throws IllegalArgumentException if the options are malformed, with a message suitable for the user
+         */
+        static Config parse(List<String> options) {
+            int classes = 100;
+            int methodsPerClass = 10;
+            int callsPerMethod = 2;
+            int bugsPerMethod = 1;
+            int classesPerPackage = 20;
+            long seed = 0;
+
+            for (int i = 0; i < options.size(); i++) {
+                var option = options.get(i);
+                if (i + 1 >= options.size()) {
+                    throw new IllegalArgumentException(option + " expects a value");
+                }
+                var value = options.get(++i);
+                switch (option) {
+                    case "--classes" -> classes = parseInt(option, value, 1);
+                    case "--methods" -> methodsPerClass = parseInt(option, value, 1);
+                    case "--calls" -> callsPerMethod = parseInt(option, value, 0);
+                    case "--bugs" -> bugsPerMethod = parseInt(option, value, 0);
+                    case "--package-size" -> classesPerPackage = parseInt(option, value, 1);
+                    case "--seed" -> seed = parseInt(option, value, 0);
+                    default -> throw new IllegalArgumentException("unknown option " + option);
+                }
+            }
+            return new Config(classes, methodsPerClass, callsPerMethod, bugsPerMethod, classesPerPackage, seed);
+        }
+
+        private static int parseInt(String option, String value, int minimum) {
+            int parsed;
+            try {
+                parsed = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(option + " expects a number, got " + value);
+            }
+            if (parsed < minimum) {
+                throw new IllegalArgumentException(option + " must be at least " + minimum);
+            }
+            return parsed;
+        }
+    }
+
+    private ProjectGenerator() {
+        throw new AssertionError("Cannot instantiate ProjectGenerator");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println(USAGE);
+            return;
+        }
+        Config config;
+        try {
+            config = Config.parse(List.of(args).subList(1, args.length));
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println(USAGE);
+            return;
+        }
+        var project = generate(Path.of(args[0]), config);
+        System.out.println("Generated " + config.classes() + " classes with " + project.warnings().size()
+                + " seeded bugs in " + project.directory());
+    }
+
+    /**
+     * @param directory the project directory to create; it must not already contain a project
+     */
+    static GeneratedProject generate(Path directory, Config config) throws IOException {
+        var src = directory.resolve("src");
+        Files.createDirectories(directory.resolve("lib"));
+        var random = new Random(config.seed());
+
+        var warnings = new ArrayList<Warning>();
+        for (int c = 0; c < config.classes(); c++) {
+            var packageName = packageOf(c, config);
+            var className = "Class" + c;
+            var file = src.resolve(packageName).resolve(className + ".java");
+            Files.createDirectories(file.getParent());
+
+            var source = new Source();
+            source.line("package " + packageName + ";");
+            source.line("");
+            source.line("public class " + className + " {");
+            for (int m = 0; m < config.methodsPerClass(); m++) {
+                source.line("    private int field" + m + " = " + m + ";");
+            }
+            for (int m = 0; m < config.methodsPerClass(); m++) {
+                source.line("");
+                source.line("    public int method" + m + "(int argument, String name) {");
+                source.line("        int result = argument + field" + m + ";");
+                for (int k = 0; k < config.callsPerMethod(); k++) {
+                    int callee = random.nextInt(config.classes());
+                    int method = random.nextInt(config.methodsPerClass());
+                    source.line("        result += new " + qualifiedName(callee, config) + "().method" + method + "(result, name);");
+                }
+                for (int k = 0; k < config.bugsPerMethod(); k++) {
+                    int callee = random.nextInt(config.classes());
+                    int line = source.line("        result += new " + qualifiedName(callee, config) + "().describe(null);");
+                    warnings.add(new Warning(file.toString(), line, "org.checkerframework.checker.nullness.NullnessChecker"));
+                }
+                source.line("        return result;");
+                source.line("    }");
+            }
+            source.line("");
+            source.line("    public int describe(String name) {");
+            source.line("        return name.length();");
+            source.line("    }");
+            source.line("}");
+            Files.writeString(file, source.text);
+        }
+        return new GeneratedProject(directory, warnings);
+    }
+
+    private static String packageOf(int c, Config config) {
+        return "pkg" + c / config.classesPerPackage();
+    }
+
+    private static String qualifiedName(int c, Config config) {
+        return packageOf(c, config) + ".Class" + c;
+    }
+
+    private static final class Source {
+        final StringBuilder text = new StringBuilder();
+        int lines = 0;
+
+        /**
+         * @return the 1-based number of the line just added
+         */
+        int line(String line) {
+            text.append(line).append('\n');
+            return ++lines;
+        }
+    }
+}
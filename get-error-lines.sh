@@ -1,20 +1,33 @@
 #!/usr/bin/env bash
 
 # runs the checker framework for a given type system for a given source directory, returning the error lines
+# usage: get-error-lines.sh checker project [file...]
+# checker may be a comma separated list of checkers, which are run together
+# if files are given, only those are checked; the rest of src is still used to resolve references to them
+# each error is printed as file, line and message key (e.g. nullness:argument), separated by tabs
 
 if [ -z "$CHECKERFRAMEWORK" ]; then
     echo "CHECKER_FRAMEWORK environment variable must be set."
     exit
 fi
 
+checker="$1"
+project="$2"
+shift 2
+
 shopt -s globstar
+if [ $# -eq 0 ]; then
+    set -- "$project"/src/**/*.java
+fi
+
 # assumes layout from njr-1
 $CHECKERFRAMEWORK/checker/bin/javac \
-    -cp "$2/lib" \
+    -cp "$project/lib" \
+    -sourcepath "$project/src" \
     -proc:only \
-    -processor "$1" \
-    $2/src/**/*.java \
+    -processor "$checker" \
+    -AshowPrefixInWarningMessages \
+    "$@" \
     -Xmaxerrs 100000 2>&1 \
     | grep ": error: " \
-    | cut -d":" -f1,2 \
-    | tr ":" "\t"
+    | sed -E 's/^([^:]*):([0-9]+): error: (\[([^]]*)\])?.*$/\1\t\2\t\4/'
@@ -0,0 +1,57 @@
+package net.dogbuilt.wpi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing get-error-lines.sh's output into warnings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CheckerOutputBenchmark {
+    private static final List<String> CHECKERS = List.of(
+            "org.checkerframework.checker.nullness.NullnessChecker",
+            "org.checkerframework.checker.index.IndexChecker");
+
+    @Param({"1000"})
+    int files;
+    @Param({"10"})
+    int methodsPerFile;
+    @Param({"5"})
+    int warningsPerMethod;
+
+    private GeneratedProject project;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        project = ProjectGenerator.generate(Files.createTempDirectory("wpi-bench"),
+                new ProjectGenerator.Config(files, methodsPerFile, 2, warningsPerMethod, 20, 42));
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        project.delete();
+    }
+
+    @Benchmark
+    public void parseLines(Blackhole blackhole) {
+        for (var line : project.checkerOutput()) {
+            blackhole.consume(ScriptCheckerRunner.parseLine(line, CHECKERS));
+        }
+    }
+}
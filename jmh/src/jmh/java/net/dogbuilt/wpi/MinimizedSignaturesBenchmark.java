@@ -0,0 +1,49 @@
+package net.dogbuilt.wpi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collecting the fields and methods of a Specimin output directory, which parses every file in it;
+ * a generated source tree stands in for the output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MinimizedSignaturesBenchmark {
+    @Param({"1", "20"})
+    int files;
+    @Param({"10", "50"})
+    int methodsPerFile;
+
+    private GeneratedProject project;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        project = ProjectGenerator.generate(Files.createTempDirectory("wpi-bench"),
+                new ProjectGenerator.Config(files, methodsPerFile, 2, 1, 20, 42));
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        project.delete();
+    }
+
+    @Benchmark
+    public Set<String> minimizedFilesFieldsAndMethods() throws IOException {
+        return SpeciminTool.minimizedFilesFieldsAndMethods(project.directory().resolve("src").toString());
+    }
+}
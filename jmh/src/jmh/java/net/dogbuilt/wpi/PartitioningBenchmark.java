@@ -0,0 +1,119 @@
+package net.dogbuilt.wpi;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Partitioning the Specimin outputs of a project's targets. Specimin is not run; each target's
+ * output is taken to be the target method, the fields of its class it uses, and the methods it
+ * calls, which is what Specimin keeps of a generated project.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PartitioningBenchmark {
+    @Param({"100", "1000"})
+    int files;
+    @Param({"10"})
+    int methodsPerFile;
+    @Param({"1", "5"})
+    int warningsPerMethod;
+
+    private GeneratedProject project;
+    private List<SignatureSet> signatureSets;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        project = ProjectGenerator.generate(Files.createTempDirectory("wpi-bench"),
+                new ProjectGenerator.Config(files, methodsPerFile, 2, warningsPerMethod, 20, 42));
+
+        /* pkg.Class#method -> signature, for every method in the project */
+        var methods = new HashMap<String, String>();
+        var indexes = new HashMap<String, DeclarationIndex>();
+        List<Path> sources;
+        try (Stream<Path> paths = Files.walk(project.directory().resolve("src"))) {
+            sources = paths.filter(path -> path.toString().endsWith(".java")).toList();
+        }
+        for (var source : sources) {
+            var index = DeclarationIndex.of(parse(source));
+            indexes.put(source.toString(), index);
+            for (var method : index.compilationUnit().findAll(MethodDeclaration.class)) {
+                var signature = SpeciminTool.signatureOf(method);
+                if (signature != null)
+                    methods.put(signature.substring(0, signature.indexOf('(')), signature);
+            }
+        }
+
+        var table = new SignatureTable();
+        signatureSets = new ArrayList<>();
+        /* every warning in a method has the method as its target */
+        var targets = Collections.<MethodDeclaration>newSetFromMap(new IdentityHashMap<>());
+        for (var warning : project.warnings()) {
+            var target = warning.getEnclosingMethod(indexes.get(warning.file()));
+            if (target == null || !targets.add(target))
+                continue;
+            var signatures = new LinkedHashSet<String>();
+            signatures.add(SpeciminTool.signatureOf(target));
+            var fields = new HashMap<String, String>();
+            target.findAncestor(ClassOrInterfaceDeclaration.class).ifPresent(type -> {
+                for (var field : type.findAll(FieldDeclaration.class)) {
+                    fields.put(field.getVariable(0).getNameAsString(), SpeciminTool.signatureOf(field));
+                }
+            });
+            for (var name : target.findAll(NameExpr.class)) {
+                var field = fields.get(name.getNameAsString());
+                if (field != null)
+                    signatures.add(field);
+            }
+            for (var call : target.findAll(MethodCallExpr.class)) {
+                if (call.getScope().orElse(null) instanceof ObjectCreationExpr creation) {
+                    var callee = methods.get(creation.getType().asString() + "#" + call.getNameAsString());
+                    if (callee != null)
+                        signatures.add(callee);
+                }
+            }
+            signatureSets.add(SignatureSet.of(List.copyOf(signatures), table));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        project.delete();
+    }
+
+    private static CompilationUnit parse(Path file) throws IOException {
+        return CompilationUnitCache.parse(Files.readString(file));
+    }
+
+    @Benchmark
+    public Partitioning.Result compute() {
+        return Partitioning.compute(signatureSets);
+    }
+}
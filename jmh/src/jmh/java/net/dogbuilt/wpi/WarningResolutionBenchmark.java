@@ -0,0 +1,83 @@
+package net.dogbuilt.wpi;
+
+import com.github.javaparser.ast.CompilationUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolving every warning of a project to its enclosing declarations and Specimin targets, with the
+ * project's files already parsed and indexed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class WarningResolutionBenchmark {
+    @Param({"100", "1000"})
+    int files;
+    @Param({"10"})
+    int methodsPerFile;
+    @Param({"1", "5"})
+    int warningsPerMethod;
+
+    private GeneratedProject project;
+    /* held here, since the shared cache may evict them; the build also sizes it to hold every file */
+    private final Map<String, DeclarationIndex> indexes = new HashMap<>();
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        project = ProjectGenerator.generate(Files.createTempDirectory("wpi-bench"),
+                new ProjectGenerator.Config(files, methodsPerFile, 2, warningsPerMethod, 20, 42));
+        /* parse and index everything up front; parsing is measured separately */
+        for (var warning : project.warnings()) {
+            indexes.computeIfAbsent(warning.file(), file -> DeclarationIndex.of(parse(file)));
+            CompilationUnitCache.shared().index(warning.file());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        project.delete();
+    }
+
+    private static CompilationUnit parse(String file) {
+        try {
+            return CompilationUnitCache.parse(Files.readString(Path.of(file)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Benchmark
+    public void enclosingDeclarations(Blackhole blackhole) throws IOException {
+        for (var warning : project.warnings()) {
+            var index = indexes.get(warning.file());
+            blackhole.consume(warning.getEnclosingMethod(index));
+            blackhole.consume(warning.getEnclosingField(index));
+        }
+    }
+
+    @Benchmark
+    public void targets(Blackhole blackhole) throws IOException {
+        var targets = new WarningTargets(project.src());
+        for (var warning : project.warnings()) {
+            blackhole.consume(targets.add(warning));
+        }
+    }
+}